@@ -0,0 +1,129 @@
+package appDomain;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Synthetic word streams for the benchmarks. A stream of n words draws from a
+ * vocabulary of n / 10 distinct lowercase words (at least 1000), made of
+ * random letters and so in no particular order. The same distribution and
+ * size always give the same words.
+ */
+public final class Corpus {
+
+    /** How the words of a stream are drawn from the vocabulary. */
+    public enum Distribution {
+        /** every word equally likely */
+        RANDOM,
+        /** the vocabulary in alphabetical order, each word repeated n / vocabulary times */
+        SORTED,
+        /** word of rank r has frequency proportional to 1 / r, as in natural text */
+        ZIPF
+    }
+
+    private static final long SEED = 20241108L;
+    private static final int WORDS_PER_LINE = 12;
+
+    private Corpus() {
+    }
+
+    public static int vocabularySize(int n) {
+        return Math.max(1000, n / 10);
+    }
+
+    /**
+     * @param distribution how words are drawn
+     * @param n            the number of words in the stream
+     * @return the stream, sharing one String per distinct word
+     */
+    public static String[] words(Distribution distribution, int n) {
+        Random random = new Random(SEED + n);
+        String[] vocabulary = vocabulary(vocabularySize(n), random);
+        String[] words = new String[n];
+        switch (distribution) {
+            case RANDOM:
+                for (int i = 0; i < n; i++) {
+                    words[i] = vocabulary[random.nextInt(vocabulary.length)];
+                }
+                break;
+            case SORTED:
+                Arrays.sort(vocabulary);
+                for (int i = 0; i < n; i++) {
+                    words[i] = vocabulary[(int) ((long) i * vocabulary.length / n)];
+                }
+                break;
+            case ZIPF:
+                // cumulative weights of the ranks; the vocabulary is unordered, so rank is unrelated to spelling
+                double[] cumulative = new double[vocabulary.length];
+                double sum = 0;
+                for (int r = 0; r < cumulative.length; r++) {
+                    sum += 1.0 / (r + 1);
+                    cumulative[r] = sum;
+                }
+                for (int i = 0; i < n; i++) {
+                    int r = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                    words[i] = vocabulary[Math.min(r < 0 ? -r - 1 : r, vocabulary.length - 1)];
+                }
+                break;
+            default:
+                throw new AssertionError(distribution);
+        }
+        return words;
+    }
+
+    /**
+     * Writes the stream as a text file under corpora/ in the working directory,
+     * unless an earlier run already did.
+     *
+     * @return the file
+     * @throws IOException if the file cannot be written
+     */
+    public static Path file(Distribution distribution, int n) throws IOException {
+        Path file = Paths.get("corpora", distribution.name().toLowerCase() + "-" + n + ".txt");
+        if (Files.exists(file)) return file;
+        Files.createDirectories(file.getParent());
+        // written under another name first, so a run stopped halfway does not leave a short corpus behind
+        Path partial = Paths.get(file + ".part");
+        String[] words = words(distribution, n);
+        try (BufferedWriter out = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < words.length; i++) {
+                out.write(words[i]);
+                out.write((i + 1) % WORDS_PER_LINE == 0 ? '\n' : ' ');
+            }
+            out.write('\n');
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    // distinct words of 3 to 10 letters
+    private static String[] vocabulary(int size, Random random) {
+        Set<String> words = new HashSet<>(size * 2);
+        char[] letters = new char[10];
+        while (words.size() < size) {
+            int length = 3 + random.nextInt(8);
+            for (int i = 0; i < length; i++) {
+                letters[i] = (char) ('a' + random.nextInt(26));
+            }
+            words.add(new String(letters, 0, length));
+        }
+        String[] vocabulary = words.toArray(new String[0]);
+        // HashSet order depends on the hash codes only, but shuffle so it does not follow them either
+        for (int i = vocabulary.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String t = vocabulary[i];
+            vocabulary[i] = vocabulary[j];
+            vocabulary[j] = t;
+        }
+        return vocabulary;
+    }
+}
@@ -0,0 +1,68 @@
+package appDomain;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import appDomain.WordTracker.WordEntry;
+import implementations.BSTree;
+import implementations.HashIndex;
+
+/**
+ * Files a stream of words as a scan does, one occurrence per word, without the
+ * tokenizer: into a balanced BSTree looked up word by word (index=tree), or
+ * into a HashIndex sorted into a tree at the end (index=hash, what scanFile
+ * does). Both end with the same tree, so the scores compare the whole cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class IngestBenchmark {
+
+    @Param({ "10000", "100000", "1000000", "10000000" })
+    public int words;
+
+    @Param({ "RANDOM", "SORTED", "ZIPF" })
+    public Corpus.Distribution distribution;
+
+    @Param({ "tree", "hash" })
+    public String index;
+
+    private String[] stream;
+    private int fileId;
+
+    @Setup
+    public void setUp() {
+        stream = Corpus.words(distribution, words);
+        fileId = FileTable.shared().idOf("ingest.txt");
+    }
+
+    @Benchmark
+    public BSTree<WordEntry> ingest() {
+        if (index.equals("tree")) {
+            BSTree<WordEntry> tree = new BSTree<>(true);
+            for (int i = 0; i < stream.length; i++) {
+                tree.computeIfAbsent(stream[i], WordEntry.KEY_ORDER, WordEntry::new).add(fileId, i + 1);
+            }
+            return tree;
+        }
+        HashIndex<CharSequence, WordEntry> hashed = new HashIndex<>(WordEntry.KEY_HASH, WordEntry.KEY_ORDER);
+        for (int i = 0; i < stream.length; i++) {
+            hashed.computeIfAbsent(stream[i], key -> new WordEntry(key.toString())).add(fileId, i + 1);
+        }
+        return hashed.toTree();
+    }
+}
@@ -0,0 +1,114 @@
+package appDomain;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import appDomain.WordTracker.WordEntry;
+import implementations.BSTree;
+
+/**
+ * The stages of a WordTracker run over one corpus file: tokenizing it into a
+ * tree (what scanFile does for each input), writing and reading the
+ * repository file (saveRepo and loadRepo without the log), and formatting the
+ * -po report on one thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PipelineBenchmark {
+
+    @Param({ "10000", "100000", "1000000", "10000000" })
+    public int words;
+
+    @Param({ "RANDOM", "SORTED", "ZIPF" })
+    public Corpus.Distribution distribution;
+
+    private Path corpus;
+    private BSTree<WordEntry> scanned;
+    private File saved;
+    private File written;
+
+    @Setup
+    public void setUp() throws IOException {
+        corpus = Corpus.file(distribution, words);
+        scanned = WordTracker.scanFile(corpus);
+        saved = File.createTempFile("repository", ".dat");
+        written = File.createTempFile("repository", ".dat");
+        RepositoryFile.write(scanned, saved);
+    }
+
+    @TearDown
+    public void tearDown() {
+        saved.delete();
+        written.delete();
+    }
+
+    @Benchmark
+    public BSTree<WordEntry> scan() throws IOException {
+        return WordTracker.scanFile(corpus);
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        RepositoryFile.write(scanned, written);
+    }
+
+    @Benchmark
+    public BSTree<WordEntry> load() throws IOException {
+        return RepositoryFile.read(saved);
+    }
+
+    @Benchmark
+    public long report() throws IOException {
+        CountingWriter out = new CountingWriter();
+        WordTracker.writeReport("-po", scanned, out, 1);
+        return out.count;
+    }
+
+    // keeps only the length, so the report is formatted but not stored
+    private static final class CountingWriter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(int c) {
+            count++;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package appDomain;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import appDomain.WordTracker.WordEntry;
+import implementations.BSTree;
+
+/**
+ * The comparisons between words that are left once a scan no longer descends
+ * a tree per word: sorting the distinct words of a stream into order (the end
+ * of a scan, when its hash index becomes a tree), and looking each word of
+ * the stream up in the sorted tree by key (what -w&lt;word&gt; does to pick the
+ * words of a report from a loaded tree).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class WordOrderBenchmark {
+
+    @Param({ "10000", "100000", "1000000", "10000000" })
+    public int words;
+
+    @Param({ "RANDOM", "SORTED", "ZIPF" })
+    public Corpus.Distribution distribution;
+
+    private String[] stream;
+    private WordEntry[] distinct;
+    private BSTree<WordEntry> tree;
+
+    @Setup
+    public void setUp() {
+        stream = Corpus.words(distribution, words);
+        Map<String, WordEntry> entries = new LinkedHashMap<>();
+        for (String word : stream) {
+            entries.computeIfAbsent(word, WordEntry::new);
+        }
+        distinct = entries.values().toArray(new WordEntry[0]);
+        tree = BSTree.fromSorted(sort());
+    }
+
+    @Benchmark
+    public WordEntry[] sort() {
+        WordEntry[] sorted = distinct.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    @Benchmark
+    public void lookup(Blackhole bh) {
+        for (String word : stream) {
+            bh.consume(tree.get(word, WordEntry.KEY_ORDER));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package implementations;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import appDomain.Corpus;
+import utilities.BSTreeADT;
+import utilities.Iterator;
+
+/**
+ * Adds, looks up and walks a stream of words with a balanced BSTree, or with
+ * an ArrayBSTree when engine is arrays. Each operation is one pass over the
+ * whole stream (or the whole tree), so the score divided by the word count is
+ * the cost per word.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BSTreeBenchmark {
+
+    @Param({ "10000", "100000", "1000000", "10000000" })
+    public int words;
+
+    @Param({ "RANDOM", "SORTED", "ZIPF" })
+    public Corpus.Distribution distribution;
+
+    @Param({ "nodes", "arrays" })
+    public String engine;
+
+    private String[] stream;
+    private BSTreeADT<String> tree;
+
+    @Setup
+    public void setUp() {
+        stream = Corpus.words(distribution, words);
+        tree = add();
+    }
+
+    @Benchmark
+    public BSTreeADT<String> add() {
+        BSTreeADT<String> built = engine.equals("arrays") ? new ArrayBSTree<>() : new BSTree<>(true);
+        for (String word : stream) {
+            built.add(word);
+        }
+        return built;
+    }
+
+    @Benchmark
+    public void search(Blackhole bh) {
+        for (String word : stream) {
+            // contains, since the array tree's search copies the node it finds
+            bh.consume(tree.contains(word));
+        }
+    }
+
+    @Benchmark
+    public void inorder(Blackhole bh) {
+        Iterator<String> it = tree.inorderIterator();
+        while (it.hasNext()) {
+            bh.consume(it.next());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package implementations;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import appDomain.Corpus;
+
+/**
+ * Lookups in a ConcurrentBSTree (tree=concurrent) or in a balanced BSTree
+ * behind one monitor (tree=synchronized) from 1, 2, 4 and as many threads as
+ * there are cores, one word of the stream per operation. Lookups that scale
+ * show a total throughput that grows with the thread count, up to the number
+ * of cores; readWhileWriting runs three readers beside a writer that keeps
+ * rotating the tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ConcurrentBSTreeBenchmark {
+
+    @Param({ "100000", "1000000" })
+    public int words;
+
+    @Param({ "RANDOM", "ZIPF" })
+    public Corpus.Distribution distribution;
+
+    @Param({ "concurrent", "synchronized" })
+    public String tree;
+
+    private String[] stream;
+    private ConcurrentBSTree<String> concurrent;
+    private BSTree<String> locked;
+
+    @Setup
+    public void setUp() {
+        stream = Corpus.words(distribution, words);
+        if (tree.equals("concurrent")) {
+            concurrent = new ConcurrentBSTree<>();
+            for (String word : stream) {
+                concurrent.add(word);
+            }
+        } else {
+            locked = new BSTree<>(true);
+            for (String word : stream) {
+                locked.add(word);
+            }
+        }
+    }
+
+    // where each thread is in the stream; the threads start far apart so they do not read in step
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        @Setup
+        public void setUp(ConcurrentBSTreeBenchmark benchmark, ThreadParams params) {
+            next = (int) ((long) params.getThreadIndex() * 7919 % benchmark.stream.length);
+        }
+    }
+
+    private boolean lookup(Cursor cursor) {
+        String word = stream[cursor.next];
+        cursor.next = cursor.next + 1 == stream.length ? 0 : cursor.next + 1;
+        if (concurrent != null) return concurrent.contains(word);
+        synchronized (locked) {
+            return locked.contains(word);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean read1(Cursor cursor) {
+        return lookup(cursor);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public boolean read2(Cursor cursor) {
+        return lookup(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean read4(Cursor cursor) {
+        return lookup(cursor);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean readAllCores(Cursor cursor) {
+        return lookup(cursor);
+    }
+
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(3)
+    public boolean reader(Cursor cursor) {
+        return lookup(cursor);
+    }
+
+    // takes the largest word out and puts it back, so the size stays the same while the right spine rotates
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(1)
+    public boolean writer() {
+        if (concurrent != null) return concurrent.add(concurrent.removeMax().getElement());
+        synchronized (locked) {
+            return locked.add(locked.removeMax().getElement());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package appDomain;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gives every input file name a small <code>int</code> id, so word entries
+ * store one id per file instead of a String, and the name is looked up only
+ * when a report or repository is written.
+ * <p>
+ * Ids are handed out in the order names are first seen and never change while
+ * the program runs. When a repository is loaded into an empty table its names
+ * arrive sorted, so ids usually follow name order already; {@link #ranks()}
+ * gives the name order for the cases where they do not. All methods are safe
+ * to call from several threads.
+ */
+public final class FileTable {
+
+    private static final FileTable SHARED = new FileTable();
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[16];
+    private int size;
+    // cached result of ranks(), dropped whenever a name is added
+    private int[] ranks;
+
+    FileTable() {
+    }
+
+    /**
+     * @return the table shared by every word entry in the program
+     */
+    public static FileTable shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the id of a file name, giving it the next free id the first time
+     * it is seen.
+     *
+     * @param name the file name
+     * @return the id of the name
+     * @throws NullPointerException if name is null
+     */
+    public synchronized int idOf(String name) {
+        if (name == null) throw new NullPointerException();
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        if (size == names.length) names = Arrays.copyOf(names, size * 2);
+        names[size] = name;
+        ids.put(name, size);
+        ranks = null;
+        return size++;
+    }
+
+    /**
+     * @param name the file name
+     * @return the id of the name, or -1 if it has never been seen
+     */
+    public synchronized int find(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id a file id
+     * @return the file name with that id
+     * @throws IndexOutOfBoundsException if no name has that id
+     */
+    public synchronized String nameOf(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException(String.valueOf(id));
+        return names[id];
+    }
+
+    /**
+     * @return the number of file names seen so far
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return a copy of the names indexed by id, for resolving many ids without
+     *         locking each time
+     */
+    public synchronized String[] names() {
+        return Arrays.copyOf(names, size);
+    }
+
+    /**
+     * Returns the position of each name in sorted order, indexed by id. Sorting
+     * files by rank gives the same order as sorting them by name.
+     *
+     * @return the ranks of every id seen so far; the array must not be changed
+     */
+    public synchronized int[] ranks() {
+        if (ranks == null) {
+            Integer[] byName = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                byName[i] = i;
+            }
+            Arrays.sort(byName, (a, b) -> names[a].compareTo(names[b]));
+            int[] r = new int[size];
+            for (int i = 0; i < size; i++) {
+                r[byName[i]] = i;
+            }
+            ranks = r;
+        }
+        return ranks;
+    }
+}
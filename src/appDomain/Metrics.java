@@ -0,0 +1,395 @@
+package appDomain;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntBiFunction;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and timers for where a run spends its time: how many words were
+ * read and how many key comparisons it took to file them, how large the tree
+ * is, how many bytes went to and from the repository and the log, and how long
+ * each phase took.
+ * <p>
+ * Nothing is recorded until {@link #enable()} is called; until then each hook
+ * costs one volatile read, so the hooks stay in place. Hooks run once per file,
+ * phase or save rather than once per word, and the counters are LongAdders, so
+ * files scanned in parallel do not contend on them. Once enabled the counters
+ * are also published over JMX as {@value #OBJECT_NAME}. Values are totals since
+ * they were enabled or {@link #reset()}, which for a server spans every
+ * command it has run.
+ */
+public final class Metrics implements MetricsMXBean {
+
+    public static final String OBJECT_NAME = "appDomain:type=Metrics";
+
+    /** The timed stages of a command. */
+    public enum Phase {
+        /** reading repository.dat and replaying the log */
+        LOAD,
+        /** tokenizing the input files into per-file trees */
+        SCAN,
+        /** appending a run to the log */
+        LOG,
+        /** merging a run into the words */
+        MERGE,
+        /** writing repository.dat */
+        SAVE,
+        /** selecting and formatting the report */
+        REPORT;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final Metrics SHARED = new Metrics();
+
+    private volatile boolean enabled;
+    private boolean registered;
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private volatile int treeWords;
+    private volatile int treeHeight;
+    private final Histogram[] phases = new Histogram[Phase.values().length];
+
+    Metrics() {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new Histogram();
+        }
+    }
+
+    /**
+     * @return the metrics every part of the program records to
+     */
+    public static Metrics shared() {
+        return SHARED;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts recording, and publishes the shared metrics over JMX the first
+     * time it is called on them.
+     */
+    public synchronized void enable() {
+        enabled = true;
+        if (registered || this != SHARED) return;
+        registered = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException e) {
+            // the summary printed by -stats still works without JMX
+        }
+    }
+
+    @Override
+    public void reset() {
+        tokens.reset();
+        comparisons.reset();
+        bytesRead.reset();
+        bytesWritten.reset();
+        treeWords = 0;
+        treeHeight = 0;
+        for (Histogram phase : phases) {
+            phase.reset();
+        }
+    }
+
+    /**
+     * @return the time to pass to {@link #end(Phase, long)}, or 0 if nothing is
+     *         being recorded
+     */
+    public long begin() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records how long a phase took.
+     *
+     * @param phase the phase that finished
+     * @param began what {@link #begin()} returned when the phase started
+     */
+    public void end(Phase phase, long began) {
+        if (began != 0) phases[phase.ordinal()].record(System.nanoTime() - began);
+    }
+
+    /**
+     * Records the words of one scanned file.
+     *
+     * @param words       the number of words read, each of them one tree lookup
+     * @param comparisons the key comparisons the lookups took
+     */
+    public void scanned(long words, long comparisons) {
+        if (!enabled) return;
+        tokens.add(words);
+        this.comparisons.add(comparisons);
+    }
+
+    public void read(long bytes) {
+        if (enabled) bytesRead.add(bytes);
+    }
+
+    public void written(long bytes) {
+        if (enabled) bytesWritten.add(bytes);
+    }
+
+    /**
+     * Records the size and height of the words a command ended up with.
+     *
+     * @param height the tree height, or -1 if the words were not in a tree, as
+     *               for a query answered from the repository's index
+     */
+    public void tree(int words, int height) {
+        if (!enabled) return;
+        treeWords = words;
+        treeHeight = height;
+    }
+
+    /**
+     * Wraps an order so the comparisons made through it are counted. The count
+     * is a plain field, so each thread needs its own wrapper.
+     *
+     * @param order the order to count
+     * @return the counting order
+     */
+    public static <K, E> CountingOrder<K, E> counting(ToIntBiFunction<K, E> order) {
+        return new CountingOrder<>(order);
+    }
+
+    public Histogram histogram(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    @Override
+    public long getTokens() {
+        return tokens.sum();
+    }
+
+    @Override
+    public double getTokensPerSecond() {
+        long nanos = histogram(Phase.SCAN).total();
+        return nanos == 0 ? 0 : getTokens() * 1e9 / nanos;
+    }
+
+    @Override
+    public long getTreeComparisons() {
+        return comparisons.sum();
+    }
+
+    @Override
+    public double getComparisonsPerLookup() {
+        long lookups = getTokens();
+        return lookups == 0 ? 0 : (double) getTreeComparisons() / lookups;
+    }
+
+    @Override
+    public int getTreeWords() {
+        return treeWords;
+    }
+
+    @Override
+    public int getTreeHeight() {
+        return treeHeight;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public Map<String, Double> getPhaseMillis() {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            Histogram h = histogram(phase);
+            if (h.count() == 0) continue;
+            millis.put(phase.label() + ".count", (double) h.count());
+            millis.put(phase.label() + ".total", millis(h.total()));
+            millis.put(phase.label() + ".p50", millis(h.percentile(0.5)));
+            millis.put(phase.label() + ".p99", millis(h.percentile(0.99)));
+            millis.put(phase.label() + ".max", millis(h.max()));
+        }
+        return millis;
+    }
+
+    /**
+     * @return the counters as lines of text, with a table of the phases that
+     *         have run
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "Words read: %d (%.0f per second of scanning)%n",
+                getTokens(), getTokensPerSecond()));
+        sb.append(String.format(Locale.ROOT, "Key comparisons: %d (%.1f per lookup)%n",
+                getTreeComparisons(), getComparisonsPerLookup()));
+        sb.append(String.format(Locale.ROOT, "Tree: %d words, height %s%n", getTreeWords(),
+                getTreeHeight() < 0 ? "unknown (read from index)" : String.valueOf(getTreeHeight())));
+        sb.append(String.format(Locale.ROOT, "Repository and log: %d bytes read, %d bytes written%n",
+                getBytesRead(), getBytesWritten()));
+        sb.append(String.format(Locale.ROOT, "%-8s %6s %12s %12s %12s %12s%n",
+                "Phase", "count", "total ms", "p50 ms", "p99 ms", "max ms"));
+        for (Phase phase : Phase.values()) {
+            Histogram h = histogram(phase);
+            if (h.count() == 0) continue;
+            sb.append(String.format(Locale.ROOT, "%-8s %6d %12.3f %12.3f %12.3f %12.3f%n", phase.label(), h.count(),
+                    millis(h.total()), millis(h.percentile(0.5)), millis(h.percentile(0.99)), millis(h.max())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the counters as one JSON object, times in milliseconds
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{");
+        sb.append("\"tokens\":").append(getTokens());
+        sb.append(",\"tokensPerSecond\":").append(number(getTokensPerSecond()));
+        sb.append(",\"treeComparisons\":").append(getTreeComparisons());
+        sb.append(",\"comparisonsPerLookup\":").append(number(getComparisonsPerLookup()));
+        sb.append(",\"treeWords\":").append(getTreeWords());
+        sb.append(",\"treeHeight\":").append(getTreeHeight() < 0 ? "null" : String.valueOf(getTreeHeight()));
+        sb.append(",\"bytesRead\":").append(getBytesRead());
+        sb.append(",\"bytesWritten\":").append(getBytesWritten());
+        sb.append(",\"phases\":{");
+        String separator = "";
+        for (Phase phase : Phase.values()) {
+            Histogram h = histogram(phase);
+            if (h.count() == 0) continue;
+            sb.append(separator).append('"').append(phase.label()).append("\":{");
+            sb.append("\"count\":").append(h.count());
+            sb.append(",\"totalMs\":").append(number(millis(h.total())));
+            sb.append(",\"p50Ms\":").append(number(millis(h.percentile(0.5))));
+            sb.append(",\"p99Ms\":").append(number(millis(h.percentile(0.99))));
+            sb.append(",\"maxMs\":").append(number(millis(h.max())));
+            sb.append('}');
+            separator = ",";
+        }
+        return sb.append("}}").toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * An order that counts how often it is used.
+     */
+    public static final class CountingOrder<K, E> implements ToIntBiFunction<K, E> {
+        private final ToIntBiFunction<K, E> order;
+        private long count;
+
+        CountingOrder(ToIntBiFunction<K, E> order) {
+            this.order = order;
+        }
+
+        @Override
+        public int applyAsInt(K key, E element) {
+            count++;
+            return order.applyAsInt(key, element);
+        }
+
+        public long count() {
+            return count;
+        }
+    }
+
+    /**
+     * A histogram of non-negative values with four buckets per power of two,
+     * so a percentile is read to within a quarter of its octave, about 19%.
+     * Values from 0 to 7 have buckets of their own. Recording is lock-free.
+     */
+    public static final class Histogram {
+        // the top bit of a value picks its octave, the next SUB_BITS bits its bucket within it
+        private static final int SUB_BITS = 2;
+        private static final int BUCKETS = (64 - SUB_BITS) << SUB_BITS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(bucket(value));
+            count.increment();
+            total.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long total() {
+            return total.sum();
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        /**
+         * @param fraction between 0 and 1, such as 0.99 for the 99th percentile
+         * @return the largest value of the bucket holding that share of the
+         *         values, never more than the largest value recorded; 0 if
+         *         there are none
+         */
+        public long percentile(double fraction) {
+            long n = count();
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(fraction * n));
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += buckets.get(b);
+                if (seen >= rank) return Math.min(b + 1 < BUCKETS ? lowest(b + 1) - 1 : Long.MAX_VALUE, max());
+            }
+            return max();
+        }
+
+        void reset() {
+            for (int b = 0; b < BUCKETS; b++) {
+                buckets.set(b, 0);
+            }
+            count.reset();
+            total.reset();
+            max.set(0);
+        }
+
+        static int bucket(long value) {
+            if (value < 1 << SUB_BITS) return (int) value;
+            int octave = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (octave - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+            return ((octave - SUB_BITS + 1) << SUB_BITS) + sub;
+        }
+
+        // the smallest value that falls in bucket b
+        static long lowest(int b) {
+            if (b < 1 << SUB_BITS) return b;
+            int octave = (b >> SUB_BITS) + SUB_BITS - 1;
+            long sub = b & ((1 << SUB_BITS) - 1);
+            return ((1L << SUB_BITS) + sub) << (octave - SUB_BITS);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package appDomain;
+
+import java.util.Map;
+
+/**
+ * The counters of {@link Metrics} as JMX attributes, for watching a server or
+ * a long run from JConsole or any other JMX client.
+ */
+public interface MetricsMXBean {
+
+    boolean isEnabled();
+
+    long getTokens();
+
+    double getTokensPerSecond();
+
+    long getTreeComparisons();
+
+    double getComparisonsPerLookup();
+
+    int getTreeWords();
+
+    // -1 when the last command read its words from the index instead of a tree
+    int getTreeHeight();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    /**
+     * @return for each phase that has run, its count and its total, median,
+     *         99th percentile and longest time in milliseconds, under keys such
+     *         as <code>scan.count</code> and <code>scan.p99</code>
+     */
+    Map<String, Double> getPhaseMillis();
+
+    /** Sets every counter back to zero. */
+    void reset();
+}
@@ -0,0 +1,306 @@
+package appDomain;
+
+import appDomain.WordTracker.WordEntry;
+import implementations.BSTree;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the words found by each ingest run, kept next to the
+ * repository so a run only writes what it scanned instead of rewriting the
+ * whole repository.
+ * <p>
+ * Layout:
+ * <pre>
+ * magic "WTLG", format version (4 bytes each)
+ * then one record per run:
+ *   payload length (4 bytes), sequence number (8 bytes),
+ *   CRC32 of the sequence number and payload (4 bytes)
+ *   payload: file names, word count and words, encoded like the body of a
+ *   {@link RepositoryFile}
+ * </pre>
+ * Records are numbered in increasing order and the repository file records
+ * the last number it includes, so a record that was compacted into the
+ * repository is never applied twice, even if the process stopped between
+ * writing the repository and clearing the log.
+ * <p>
+ * A record cut short at the end of the log, as left by a crash during an
+ * append, is dropped and cut off the file when the log is replayed. A damaged
+ * record followed by more records cannot be explained by a crash, so it is
+ * reported as an error instead.
+ * <p>
+ * The log does not lock itself: a process holds a {@link RepositoryLock} from
+ * replaying it until it has appended its run or cleared it.
+ */
+public class OccurrenceLog {
+
+    private static final int MAGIC = 0x57544C47;  // "WTLG"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    // payload length, sequence number and CRC32
+    private static final int RECORD_HEADER_BYTES = 16;
+
+    private final File file;
+    // -1 until the log has been replayed
+    private long lastSequence = -1;
+    private long discarded;
+
+    /**
+     * @param file the log file; it is created by the first append
+     */
+    public OccurrenceLog(File file) {
+        if (file == null) throw new NullPointerException();
+        this.file = file;
+    }
+
+    /**
+     * @return the log file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the size of the log file in bytes, 0 if it does not exist
+     */
+    public long length() {
+        return file.length();
+    }
+
+    /**
+     * @return the sequence number of the last record in the log, or the number
+     *         the log was replayed after if it holds nothing newer
+     * @throws IllegalStateException if the log has not been replayed
+     */
+    public long getLastSequence() {
+        if (lastSequence < 0) throw new IllegalStateException("log has not been replayed");
+        return lastSequence;
+    }
+
+    /**
+     * @return the number of bytes of a torn last record cut off by the last
+     *         replay
+     */
+    public long getDiscardedBytes() {
+        return discarded;
+    }
+
+    /**
+     * Reads every record and merges the ones newer than the given sequence
+     * number. This must be called before {@link #append(BSTree)}, so the next
+     * record gets the right number.
+     *
+     * @param applied the last record already merged into the repository
+     * @return a balanced tree holding the words of every newer record
+     * @throws IOException if the log cannot be read or is damaged anywhere but
+     *                     at its end
+     */
+    public BSTree<WordEntry> replay(long applied) throws IOException {
+        BSTree<WordEntry> words = new BSTree<>(true);
+        lastSequence = applied;
+        discarded = 0;
+        if (!file.exists()) return words;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long length = raf.length();
+            if (length < HEADER_BYTES) {
+                // the first append was cut short before its header was written
+                truncate(raf, 0);
+                return words;
+            }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(raf.getFD()), 1 << 16));
+            if (in.readInt() != MAGIC) throw new IOException(file + " is not a word log");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException(file + " has unsupported format version " + version);
+
+            long pos = HEADER_BYTES;
+            long previous = 0;
+            while (pos < length) {
+                if (length - pos < RECORD_HEADER_BYTES) {
+                    truncate(raf, pos);
+                    break;
+                }
+                int size = in.readInt();
+                long sequence = in.readLong();
+                int checksum = in.readInt();
+                long end = pos + RECORD_HEADER_BYTES + size;
+                if (size < 0 || end > length) {
+                    truncate(raf, pos);
+                    break;
+                }
+                byte[] payload = new byte[size];
+                in.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(longBytes(sequence));
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    if (end == length) {
+                        truncate(raf, pos);
+                        break;
+                    }
+                    throw new IOException(file + " is damaged: checksum mismatch in record at byte " + pos);
+                }
+                if (sequence <= previous) {
+                    throw new IOException(file + " is damaged: record " + sequence + " is out of order");
+                }
+                previous = sequence;
+
+                if (sequence > applied) {
+                    words = BSTree.merge(words, decode(payload), WordEntry::addAll);
+                    lastSequence = sequence;
+                }
+                pos = end;
+            }
+            Metrics.shared().read(length);
+        } catch (EOFException e) {
+            // the length was checked before every read, so the file changed underneath us
+            throw new IOException(file + " is damaged: unexpected end of file");
+        }
+        return words;
+    }
+
+    /**
+     * Appends the words of one run as a new record and forces it to disk.
+     *
+     * @param words the words to log
+     * @return the sequence number of the new record
+     * @throws IOException           if the record cannot be written
+     * @throws IllegalStateException if the log has not been replayed
+     */
+    public long append(BSTree<WordEntry> words) throws IOException {
+        long sequence = getLastSequence() + 1;
+        RepositoryFile.EntryWriter writer = new RepositoryFile.EntryWriter(words);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        writer.writeNames(payload);
+        RepositoryFile.writeVarint(payload, words.size());
+        for (WordEntry entry : words) {
+            writer.write(payload, entry);
+        }
+        payload.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(longBytes(sequence));
+        crc.update(bytes.toByteArray());
+        boolean created = file.length() == 0;
+        try (FileOutputStream stream = new FileOutputStream(file, true)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+            if (created) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            out.writeInt(bytes.size());
+            out.writeLong(sequence);
+            out.writeInt((int) crc.getValue());
+            bytes.writeTo(out);
+            out.flush();
+            stream.getFD().sync();
+            Metrics.shared().written(out.size());
+        }
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * Deletes the log once its records have been compacted into the repository.
+     * Sequence numbers carry on from the last record.
+     *
+     * @throws IOException if the file exists and cannot be deleted
+     */
+    public void clear() throws IOException {
+        if (file.exists() && !file.delete()) throw new IOException("could not delete " + file);
+    }
+
+    /**
+     * Drops the records up to and including the given sequence number once the
+     * repository includes them, keeping the newer ones. The kept records are
+     * copied to a new log that then replaces this one, so a crash during the
+     * trim leaves either the old log or the new one.
+     *
+     * @param sequence the last record the repository includes
+     * @throws IOException if the log cannot be read or rewritten, or is
+     *                     damaged
+     */
+    public void trim(long sequence) throws IOException {
+        if (!file.exists()) return;
+        long keepFrom;
+        long length;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            length = raf.length();
+            keepFrom = HEADER_BYTES;
+            // only the record headers are read; the payloads are skipped
+            while (keepFrom < length) {
+                raf.seek(keepFrom);
+                int size = raf.readInt();
+                long recordSequence = raf.readLong();
+                if (size < 0 || keepFrom + RECORD_HEADER_BYTES + size > length) {
+                    throw new IOException(file + " is damaged: bad record length at byte " + keepFrom);
+                }
+                if (recordSequence > sequence) break;
+                keepFrom += RECORD_HEADER_BYTES + size;
+            }
+        } catch (EOFException e) {
+            throw new IOException(file + " is damaged: unexpected end of file");
+        }
+        if (keepFrom >= length) {
+            clear();
+            return;
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        boolean moved = false;
+        try {
+            try (FileOutputStream stream = new FileOutputStream(tmp);
+                 RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                raf.seek(keepFrom);
+                byte[] buffer = new byte[1 << 16];
+                for (long left = length - keepFrom; left > 0; ) {
+                    int n = raf.read(buffer, 0, (int) Math.min(left, buffer.length));
+                    if (n < 0) throw new IOException(file + " is damaged: unexpected end of file");
+                    out.write(buffer, 0, n);
+                    left -= n;
+                }
+                out.flush();
+                stream.getFD().sync();
+                Metrics.shared().written(out.size());
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } finally {
+            if (!moved) tmp.delete();
+        }
+    }
+
+    private BSTree<WordEntry> decode(byte[] payload) throws IOException {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            int[] fileIds = RepositoryFile.readFileIds(in, payload.length, file);
+            int count = RepositoryFile.readCount(in);
+            return RepositoryFile.readEntries(in, fileIds, count, file);
+        } catch (EOFException e) {
+            throw new IOException(file + " is damaged: record ends early");
+        }
+    }
+
+    private void truncate(RandomAccessFile raf, long length) throws IOException {
+        discarded += raf.length() - length;
+        raf.setLength(length);
+    }
+
+    private static byte[] longBytes(long value) {
+        byte[] bytes = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,183 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * The line numbers one word appears on in one file, kept in ascending order in
+ * a growable <code>int</code> array.
+ * <p>
+ * A line is stored once per occurrence, so a word used twice on a line lists
+ * that line twice. Files are read from top to bottom, so nearly every add is
+ * an append; an out-of-order line is inserted at its place, and
+ * {@link #addAll(Postings)} merges two sorted lists in linear time. Readers
+ * outside this package can only read the lines; they are changed through
+ * {@link WordTracker.WordEntry}.
+ */
+public final class Postings implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final Postings EMPTY = new Postings(0);
+
+    private transient int[] lines;
+    private int size;
+
+    Postings() {
+        this(4);
+    }
+
+    Postings(int capacity) {
+        lines = new int[capacity];
+    }
+
+    /**
+     * @return the number of occurrences
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index the position, from 0 to size() - 1
+     * @return the line at that position
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+        return lines[index];
+    }
+
+    /**
+     * @return a copy of the lines in ascending order
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(lines, size);
+    }
+
+    /**
+     * @return an iterator over the lines in ascending order, without boxing
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next >= size) throw new NoSuchElementException();
+                return lines[next++];
+            }
+        };
+    }
+
+    void add(int line) {
+        if (size == lines.length) {
+            lines = Arrays.copyOf(lines, Math.max(4, size * 2));
+        }
+        if (size == 0 || line >= lines[size - 1]) {
+            lines[size++] = line;
+            return;
+        }
+        // after any equal lines, so the order of equal lines never matters
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (lines[mid] <= line) lo = mid + 1;
+            else hi = mid;
+        }
+        System.arraycopy(lines, lo, lines, lo + 1, size - lo);
+        lines[lo] = line;
+        size++;
+    }
+
+    void addAll(Postings other) {
+        if (other.size == 0) return;
+        if (size == 0 || other.lines[0] >= lines[size - 1]) {
+            if (size + other.size > lines.length) {
+                lines = Arrays.copyOf(lines, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.lines, 0, lines, size, other.size);
+            size += other.size;
+            return;
+        }
+        int[] merged = new int[size + other.size];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < size && j < other.size) {
+            merged[k++] = lines[i] <= other.lines[j] ? lines[i++] : other.lines[j++];
+        }
+        while (i < size) merged[k++] = lines[i++];
+        while (j < other.size) merged[k++] = other.lines[j++];
+        lines = merged;
+        size = k;
+    }
+
+    // a new list with the lines of both, leaving them unchanged
+    static Postings merge(Postings a, Postings b) {
+        Postings merged = new Postings(a.size + b.size);
+        merged.addAll(a);
+        merged.addAll(b);
+        return merged;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Postings)) return false;
+        Postings that = (Postings) o;
+        if (size != that.size) return false;
+        for (int i = 0; i < size; i++) {
+            if (lines[i] != that.lines[i]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 1;
+        for (int i = 0; i < size; i++) {
+            h = 31 * h + lines[i];
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(lines[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    // only the used part of the array is written
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int i = 0; i < size; i++) {
+            out.writeInt(lines[i]);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (size < 0) throw new InvalidObjectException("negative size " + size);
+        lines = new int[size];
+        for (int i = 0; i < size; i++) {
+            lines[i] = in.readInt();
+            if (i > 0 && lines[i] < lines[i - 1]) throw new InvalidObjectException("lines out of order");
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package appDomain;
+
+import appDomain.WordTracker.WordEntry;
+import implementations.BSTree;
+import implementations.PersistentBSTree;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes the word repository in a compact binary format.
+ * <p>
+ * Layout, with every count and number written as an unsigned varint:
+ * <pre>
+ * magic "WTRK", format version (4 bytes each)
+ * sequence number of the last {@link OccurrenceLog} record included (8 bytes)
+ * file count, then each file name (sorted) as length + UTF-8 bytes
+ * word count, then for each word in ascending order:
+ *   word as length + UTF-8 bytes
+ *   number of files, then for each file in ascending id order:
+ *     file id, number of lines, lines as deltas from the previous line
+ * offset of every word's entry from the start of the file (8 bytes each)
+ * offset of that table (8 bytes)
+ * CRC32 of everything above (4 bytes)
+ * </pre>
+ * Because the words are stored sorted, {@link #read(File)} rebuilds a
+ * perfectly balanced tree in linear time while streaming the file, and
+ * {@link RepositoryIndex} can binary search the offset table without loading
+ * anything. Version 1 files, which end straight after the entries, and
+ * version 2 files, which have no sequence number, can still be read.
+ */
+public class RepositoryFile {
+
+    static final int MAGIC = 0x5754524B;  // "WTRK"
+    static final int VERSION = 3;
+    // the offset of the offset table and the CRC32 at the end of the file
+    static final int TRAILER_BYTES = 12;
+    // strings longer than this are read a chunk at a time
+    private static final int STRING_CHUNK_BYTES = 1 << 16;
+
+    private RepositoryFile() {
+    }
+
+    /**
+     * Writes the tree with a log sequence number of 0.
+     *
+     * @param tree the words to save
+     * @param file the repository file
+     * @throws IOException if the file cannot be written
+     * @see #write(BSTree, File, long)
+     */
+    public static void write(BSTree<WordEntry> tree, File file) throws IOException {
+        write(tree, file, 0);
+    }
+
+    /**
+     * Writes the tree to a temporary file next to the target and then moves it
+     * into place, so an interrupted save never leaves a half-written repository.
+     *
+     * @param tree     the words to save
+     * @param file     the repository file
+     * @param sequence the last log record already merged into the tree; later
+     *                 loads replay only the records after it
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(BSTree<WordEntry> tree, File file, long sequence) throws IOException {
+        write(tree, tree.size(), file, sequence);
+    }
+
+    /**
+     * Writes a snapshot of a resident tree, as {@link #write(BSTree, File, long)}
+     * does.
+     *
+     * @param snapshot the words to save, which must not change during the write
+     * @param file     the repository file
+     * @param sequence the last log record already merged into the snapshot
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(PersistentBSTree<WordEntry> snapshot, File file, long sequence) throws IOException {
+        write(snapshot, snapshot.size(), file, sequence);
+    }
+
+    private static void write(Iterable<WordEntry> tree, int size, File file, long sequence) throws IOException {
+        EntryWriter writer = new EntryWriter(tree);
+        File tmp = new File(file.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        FileOutputStream stream = new FileOutputStream(tmp);
+        CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        boolean moved = false;
+        try {
+            try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(counter, crc))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(sequence);
+                writer.writeNames(out);
+
+                writeVarint(out, size);
+                long[] offsets = new long[size];
+                int index = 0;
+                for (WordEntry entry : tree) {
+                    offsets[index++] = counter.count;
+                    writer.write(out, entry);
+                }
+                long table = counter.count;
+                for (long offset : offsets) {
+                    out.writeLong(offset);
+                }
+                out.writeLong(table);
+                out.flush();
+                out.writeInt((int) crc.getValue());
+                out.flush();
+                // the log is cleared once this returns, so the words must be on disk before the
+                // rename makes them the repository
+                stream.getFD().sync();
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } finally {
+            if (!moved) tmp.delete();
+        }
+        syncDirectory(file);
+        Metrics.shared().written(counter.count);
+    }
+
+    // makes the rename itself durable before the log is cleared; not every platform can open a
+    // directory (Windows cannot), and there the rename is left to the file system
+    private static void syncDirectory(File file) {
+        File dir = file.getAbsoluteFile().getParentFile();
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // best effort
+        }
+    }
+
+    /**
+     * Reads a repository written by {@link #write(BSTree, File)}.
+     *
+     * @param file the repository file
+     * @return a balanced tree holding every saved word
+     * @throws IOException if the file cannot be read, is not a repository, or is
+     *                     damaged
+     */
+    public static BSTree<WordEntry> read(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(file), 1 << 16), crc))) {
+            if (in.readInt() != MAGIC) throw new IOException(file + " is not a word repository");
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException(file + " has unsupported format version " + version);
+            }
+            if (version >= 3) in.readLong();
+
+            int[] fileIds = readFileIds(in, file.length(), file);
+            int count = readCount(in);
+            BSTree<WordEntry> tree = readEntries(in, fileIds, count, file);
+
+            if (version >= 2) {
+                // the offset table is only needed by RepositoryIndex, but is still covered by the checksum
+                for (int i = 0; i <= count; i++) {
+                    in.readLong();
+                }
+            }
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) throw new IOException(file + " is damaged: checksum mismatch");
+            Metrics.shared().read(file.length());
+            return tree;
+        } catch (EOFException e) {
+            throw new IOException(file + " is damaged: unexpected end of file");
+        }
+    }
+
+    /**
+     * Reads the log sequence number stored in a repository's header, without
+     * reading the words.
+     *
+     * @param file the repository file
+     * @return the last log record included in the repository, or 0 for files
+     *         written before the log existed
+     * @throws IOException if the file cannot be read or is not a repository
+     */
+    public static long readSequence(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC) throw new IOException(file + " is not a word repository");
+            return in.readInt() >= 3 ? in.readLong() : 0;
+        } catch (EOFException e) {
+            throw new IOException(file + " is damaged: unexpected end of file");
+        }
+    }
+
+    // reads the file name table and returns the FileTable id of each name
+    static int[] readFileIds(DataInputStream in, long limit, Object source) throws IOException {
+        int fileCount = readCount(in);
+        if (fileCount > limit) throw new IOException(source + " is damaged: bad file count");
+        int[] ids = new int[fileCount];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = FileTable.shared().idOf(readString(in));
+        }
+        return ids;
+    }
+
+    // streams count entries into a balanced tree; damage is reported against source
+    static BSTree<WordEntry> readEntries(DataInputStream in, int[] fileIds, int count, Object source)
+            throws IOException {
+        try {
+            return BSTree.fromSorted(new EntryReader(in, fileIds, count), count);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalArgumentException e) {
+            throw new IOException(source + " is damaged: " + e.getMessage());
+        }
+    }
+
+    // numbers the files used by a set of words in name order and encodes the words against those numbers
+    static class EntryWriter {
+        private final String[] names;
+        private final int[] rank;
+        // the FileTable ids of the files used, in name order
+        private final int[] used;
+        // the number written for each FileTable id
+        private final int[] local;
+
+        EntryWriter(Iterable<WordEntry> words) {
+            FileTable table = FileTable.shared();
+            synchronized (table) {
+                names = table.names();
+                rank = table.ranks();
+            }
+            boolean[] seen = new boolean[names.length];
+            for (WordEntry entry : words) {
+                for (int i = 0; i < entry.fileCount(); i++) {
+                    seen[entry.fileId(i)] = true;
+                }
+            }
+            int[] byRank = new int[names.length];
+            Arrays.fill(byRank, -1);
+            for (int id = 0; id < names.length; id++) {
+                if (seen[id]) byRank[rank[id]] = id;
+            }
+            local = new int[names.length];
+            int count = 0;
+            for (int id : byRank) {
+                if (id >= 0) {
+                    byRank[count] = id;
+                    local[id] = count++;
+                }
+            }
+            used = Arrays.copyOf(byRank, count);
+        }
+
+        void writeNames(DataOutput out) throws IOException {
+            writeVarint(out, used.length);
+            for (int id : used) {
+                writeString(out, names[id]);
+            }
+        }
+
+        void write(DataOutput out, WordEntry entry) throws IOException {
+            writeString(out, entry.getWord());
+            writeVarint(out, entry.fileCount());
+            for (int f : entry.nameOrder(rank)) {
+                Postings lines = entry.lines(f);
+                writeVarint(out, local[entry.fileId(f)]);
+                writeVarint(out, lines.size());
+                int previous = 0;
+                for (int i = 0; i < lines.size(); i++) {
+                    int line = lines.get(i);
+                    writeVarint(out, line - previous);
+                    previous = line;
+                }
+            }
+        }
+    }
+
+    // decodes one word per call to next(), straight from the stream
+    private static class EntryReader implements Iterator<WordEntry> {
+        private final DataInputStream in;
+        private final int[] fileIds;
+        private int remaining;
+
+        EntryReader(DataInputStream in, int[] fileIds, int count) {
+            this.in = in;
+            this.fileIds = fileIds;
+            this.remaining = count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public WordEntry next() {
+            if (remaining == 0) throw new NoSuchElementException();
+            remaining--;
+            try {
+                WordEntry entry = new WordEntry(readString(in));
+                for (int files = readCount(in); files > 0; files--) {
+                    int id = readVarint(in);
+                    if (id < 0 || id >= fileIds.length) throw new IOException("bad file id " + id);
+                    int count = readCount(in);
+                    Postings lines = new Postings(Math.min(count, 1 << 16));
+                    int line = 0;
+                    for (int i = 0; i < count; i++) {
+                        line += readVarint(in);
+                        lines.add(line);
+                    }
+                    entry.add(fileIds[id], lines);
+                }
+                return entry;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    static void writeVarint(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarint(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("malformed varint");
+    }
+
+    static int readCount(DataInput in) throws IOException {
+        int count = readVarint(in);
+        if (count < 0) throw new IOException("bad count " + count);
+        return count;
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = readCount(in);
+        // grow the buffer only as the bytes arrive, so a damaged length runs into the end of
+        // the file instead of allocating more than the file holds
+        byte[] bytes = new byte[Math.min(length, STRING_CHUNK_BYTES)];
+        in.readFully(bytes);
+        while (bytes.length < length) {
+            int read = bytes.length;
+            bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * read));
+            in.readFully(bytes, read, bytes.length - read);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
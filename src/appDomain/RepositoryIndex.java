@@ -0,0 +1,298 @@
+package appDomain;
+
+import appDomain.WordTracker.WordEntry;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answers queries straight from a memory-mapped repository file, without
+ * loading the word tree.
+ * <p>
+ * Words are found by binary searching the offset table that
+ * {@link RepositoryFile} writes at the end of the file, and only the entries
+ * that are looked at are decoded. The file is mapped in pieces of at most
+ * 1 GiB, so repositories larger than 2 GiB work too. The checksum is not
+ * checked here, since that would mean reading the whole file; a full load
+ * with {@link RepositoryFile#read(File)} still checks it.
+ * <p>
+ * An index is opened for one query: the bytes of the entries it decodes are
+ * added up and recorded in {@link Metrics} once, when it is closed.
+ */
+public class RepositoryIndex implements Iterable<WordEntry>, Closeable {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer[] segments;
+    // the FileTable id of each file name in the repository
+    private final int[] fileIds;
+    private final int count;
+    private final long firstEntry;
+    private final long table;
+    private final long sequence;
+    // entry bytes decoded so far; range iterators may add to it from several threads
+    private final LongAdder decoded = new LongAdder();
+
+    private RepositoryIndex(File file) throws IOException {
+        raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            segments = new MappedByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_MASK + 1, length - start));
+            }
+
+            if (length < 8 + RepositoryFile.TRAILER_BYTES || readInt(0) != RepositoryFile.MAGIC) {
+                throw new IOException(file + " is not a word repository");
+            }
+            int version = readInt(4);
+            if (version < 2 || version > RepositoryFile.VERSION) {
+                throw new IOException(file + " has no offset table (format version " + version + ")");
+            }
+            int header = version >= 3 ? 16 : 8;
+            sequence = version >= 3 ? readLong(8) : 0;
+            table = readLong(length - RepositoryFile.TRAILER_BYTES);
+            if (table < header || table > length - RepositoryFile.TRAILER_BYTES) {
+                throw new IOException(file + " is damaged: bad offset table position");
+            }
+            Cursor cursor = new Cursor(header);
+            int fileCount = cursor.readCount();
+            if (fileCount > table) throw new IOException(file + " is damaged: bad file count");
+            fileIds = new int[fileCount];
+            for (int i = 0; i < fileIds.length; i++) {
+                fileIds[i] = FileTable.shared().idOf(cursor.readString());
+            }
+            count = cursor.readCount();
+            firstEntry = cursor.pos;
+            if (table + 8L * count != length - RepositoryFile.TRAILER_BYTES) {
+                throw new IOException(file + " is damaged: bad offset table");
+            }
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps a repository file for querying.
+     *
+     * @param file the repository file
+     * @return the index over the file
+     * @throws IOException if the file cannot be mapped or was written without an
+     *                     offset table
+     */
+    public static RepositoryIndex open(File file) throws IOException {
+        return new RepositoryIndex(file);
+    }
+
+    /**
+     * @return the number of words in the repository
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the last {@link OccurrenceLog} record included in the repository
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Looks up one word by binary search, decoding about log2(size) words.
+     *
+     * @param word the word to find, compared ignoring case
+     * @return the entry for the word, or null if it is not in the repository
+     * @throws IOException if the entry cannot be decoded
+     */
+    public WordEntry get(CharSequence word) throws IOException {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long start = entryOffset(mid);
+            Cursor cursor = new Cursor(start);
+            String candidate = cursor.readString();
+            int cmp = WordEntry.compareIgnoreCase(word, candidate);
+            if (cmp == 0) {
+                WordEntry found = cursor.readPostings(new WordEntry(candidate));
+                decoded.add(cursor.pos - start);
+                return found;
+            }
+            if (cmp < 0) hi = mid - 1;
+            else lo = mid + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the words that start with a prefix, ignoring case, with two binary
+     * searches; the words themselves are decoded as they are iterated.
+     *
+     * @param prefix the start shared by every word returned
+     * @return the matching words in ascending order
+     * @throws IOException if a word cannot be decoded during the search
+     */
+    public Iterable<WordEntry> withPrefix(CharSequence prefix) throws IOException {
+        return range(prefixBoundary(prefix, false), prefixBoundary(prefix, true));
+    }
+
+    // the first position whose word is not before the matches, or, if past, not one of them either
+    private int prefixBoundary(CharSequence prefix, boolean past) throws IOException {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = WordEntry.comparePrefixIgnoreCase(prefix, new Cursor(entryOffset(mid)).readString());
+            if (cmp > 0 || (past && cmp == 0)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Decodes the words one at a time in ascending order.
+     *
+     * @return an iterator over every word in the repository
+     */
+    @Override
+    public Iterator<WordEntry> iterator() {
+        return entries(firstEntry, count);
+    }
+
+    /**
+     * Returns a run of consecutive words. Each iterator decodes on its own, so
+     * different ranges can be read by different threads at the same time.
+     *
+     * @param from the position of the first word, from 0
+     * @param to   the position after the last word
+     * @return the words from position from up to, but not including, to
+     * @throws IndexOutOfBoundsException if the range is not inside the index
+     */
+    public Iterable<WordEntry> range(int from, int to) {
+        if (from < 0 || to > count || from > to) throw new IndexOutOfBoundsException(from + ", " + to);
+        return () -> {
+            try {
+                return entries(from == count ? table : entryOffset(from), to - from);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private Iterator<WordEntry> entries(long start, int length) {
+        return new Iterator<WordEntry>() {
+            private final Cursor cursor = new Cursor(start);
+            private int remaining = length;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public WordEntry next() {
+                if (remaining == 0) throw new NoSuchElementException();
+                remaining--;
+                try {
+                    long start = cursor.pos;
+                    WordEntry entry = cursor.readPostings(new WordEntry(cursor.readString()));
+                    decoded.add(cursor.pos - start);
+                    return entry;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        Metrics.shared().read(decoded.sumThenReset());
+        raf.close();
+    }
+
+    private long entryOffset(int index) throws IOException {
+        long offset = readLong(table + 8L * index);
+        if (offset < firstEntry || offset >= table) throw new IOException("bad entry offset " + offset);
+        return offset;
+    }
+
+    private byte byteAt(long pos) {
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].get((int) (pos & SEGMENT_MASK));
+    }
+
+    private int readInt(long pos) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (byteAt(pos + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private long readLong(long pos) {
+        return ((long) readInt(pos) << 32) | (readInt(pos + 4) & 0xFFFFFFFFL);
+    }
+
+    // reads the same encoding as RepositoryFile, from a position in the mapped file
+    private class Cursor {
+        private long pos;
+
+        Cursor(long pos) {
+            this.pos = pos;
+        }
+
+        int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (pos >= table) throw new IOException("entry runs past the end of the words");
+                int b = byteAt(pos++);
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IOException("malformed varint");
+        }
+
+        int readCount() throws IOException {
+            int n = readVarint();
+            if (n < 0) throw new IOException("bad count " + n);
+            return n;
+        }
+
+        String readString() throws IOException {
+            int length = readCount();
+            if (pos + length > table) throw new IOException("string runs past the end of the words");
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = byteAt(pos++);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        WordEntry readPostings(WordEntry entry) throws IOException {
+            for (int files = readCount(); files > 0; files--) {
+                int id = readVarint();
+                if (id < 0 || id >= fileIds.length) throw new IOException("bad file id " + id);
+                int count = readCount();
+                Postings lines = new Postings(Math.min(count, 1 << 16));
+                int line = 0;
+                for (int i = 0; i < count; i++) {
+                    line += readVarint();
+                    lines.add(line);
+                }
+                entry.add(fileIds[id], lines);
+            }
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package appDomain;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * An exclusive lock on a repository, held by a process from loading the
+ * repository and its log until it has appended its run or compacted the log,
+ * so two processes never replay, append to or clear the same log at once.
+ * <p>
+ * The lock is taken on a file kept next to the repository rather than on the
+ * log itself, since the log is deleted once it is compacted. The file is left
+ * behind when the lock is released; deleting it would let another process lock
+ * a file that is already gone. The operating system releases the lock if the
+ * process dies, so a crash never leaves the repository locked.
+ */
+public final class RepositoryLock implements Closeable {
+
+    private final RandomAccessFile raf;
+    private final FileLock lock;
+
+    private RepositoryLock(RandomAccessFile raf, FileLock lock) {
+        this.raf = raf;
+        this.lock = lock;
+    }
+
+    /**
+     * Takes the lock without waiting.
+     *
+     * @param file the lock file; it is created if it does not exist
+     * @return the held lock
+     * @throws IOException if the file cannot be opened, or another process, or
+     *                     another lock in this one, already holds it
+     */
+    public static RepositoryLock acquire(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        FileLock lock = null;
+        try {
+            lock = raf.getChannel().tryLock();
+        } catch (OverlappingFileLockException e) {
+            // held by another lock in this process
+        } finally {
+            if (lock == null) raf.close();
+        }
+        if (lock == null) {
+            throw new IOException("the repository is in use by another process (" + file.getAbsolutePath()
+                    + " is locked); wait for it to finish, or if a server holds it, send the command with -remote");
+        }
+        return new RepositoryLock(raf, lock);
+    }
+
+    /**
+     * Releases the lock.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.release();
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package appDomain;
+
+import appDomain.WordTracker.WordEntry;
+import implementations.BSTree;
+import implementations.PersistentBSTree;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The words a server keeps in memory between commands, with the log that makes
+ * each run durable before it is answered.
+ * <p>
+ * Runs are applied one at a time, and each one becomes visible all at once, so
+ * a snapshot holds all of a run or none of it. Reports and saves work on
+ * snapshots, which cost O(1) and never change, so they hold no lock while
+ * they walk the words and runs carry on meanwhile.
+ */
+final class ResidentRepository {
+
+    private final PersistentBSTree<WordEntry> words;
+    private final OccurrenceLog log;
+    private final File file;
+    // a save takes a while and writes through one temporary file, so saves never overlap
+    private final Object saving = new Object();
+    // the last log record the repository file includes; records after it are only in the log
+    private long savedSequence;
+    // runs that could not be logged, and how many of them the file includes: such a run is
+    // only in memory until a save includes it
+    private int unlogged;
+    private int savedUnlogged;
+
+    /**
+     * @param savedSequence the last log record the repository file includes
+     */
+    ResidentRepository(PersistentBSTree<WordEntry> words, OccurrenceLog log, File file, long savedSequence) {
+        this.words = words;
+        this.log = log;
+        this.file = file;
+        this.savedSequence = savedSequence;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    PersistentBSTree<WordEntry> snapshot() {
+        return words.snapshot();
+    }
+
+    /**
+     * Logs a run and adds it to the words. The run is added even if it cannot
+     * be logged, so the next save still includes it.
+     *
+     * @param scanned the words of the run, which must not be used afterwards
+     * @return the words including the run
+     * @throws IOException if the run could not be logged
+     */
+    synchronized PersistentBSTree<WordEntry> ingest(BSTree<WordEntry> scanned) throws IOException {
+        Metrics metrics = Metrics.shared();
+        long began = metrics.begin();
+        boolean logged = false;
+        try {
+            log.append(scanned);
+            logged = true;
+        } finally {
+            if (!logged) unlogged++;
+            metrics.end(Metrics.Phase.LOG, began);
+            began = metrics.begin();
+            // entries already in the tree are replaced by merged copies, since snapshots share them
+            words.putAll(scanned, WordEntry::union);
+            metrics.end(Metrics.Phase.MERGE, began);
+        }
+        return words.snapshot();
+    }
+
+    // a run that could not be logged is saved as soon as possible, since nothing else keeps it
+    synchronized boolean needsCompaction() {
+        return unlogged > savedUnlogged || log.length() >= WordTracker.compactThreshold(file);
+    }
+
+    /**
+     * Writes a snapshot to the repository file, then drops the log records it
+     * includes. Runs logged during the write stay in the log.
+     *
+     * @return false if every run was already saved, so there was nothing to do
+     * @throws IOException if the repository cannot be written, or the log
+     *                     cannot be trimmed
+     */
+    boolean compact() throws IOException {
+        synchronized (saving) {
+            PersistentBSTree<WordEntry> snapshot;
+            long sequence;
+            int includedUnlogged;
+            synchronized (this) {
+                sequence = log.getLastSequence();
+                if (sequence == savedSequence && unlogged == savedUnlogged) return false;
+                snapshot = words.snapshot();
+                includedUnlogged = unlogged;
+            }
+            long began = Metrics.shared().begin();
+            RepositoryFile.write(snapshot, file, sequence);
+            Metrics.shared().end(Metrics.Phase.SAVE, began);
+            synchronized (this) {
+                savedSequence = sequence;
+                savedUnlogged = includedUnlogged;
+                log.trim(sequence);
+            }
+            return true;
+        }
+    }
+}
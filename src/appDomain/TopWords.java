@@ -0,0 +1,100 @@
+package appDomain;
+
+import appDomain.WordTracker.WordEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ToIntFunction;
+
+/**
+ * Picks the most frequent words in one pass, keeping only the best K seen so
+ * far in a min-heap, so the cost is O(n log K) time and O(K) memory instead of
+ * sorting every word.
+ * <p>
+ * Words with the same count are ranked in word order, so the result does not
+ * depend on the order the words are visited in.
+ */
+public final class TopWords {
+
+    private TopWords() {
+    }
+
+    /**
+     * @param words the words to rank
+     * @param k     how many words to keep
+     * @return the k words with the highest total, most frequent first
+     * @throws IllegalArgumentException if k is negative
+     */
+    public static List<WordEntry> top(Iterable<WordEntry> words, int k) {
+        return top(words, k, WordEntry::total);
+    }
+
+    /**
+     * @param words the words to rank
+     * @param k     how many words to keep
+     * @param file  the name of the file to count occurrences in
+     * @return the k words used most often in the file, most frequent first;
+     *         words that do not appear in the file are left out
+     * @throws IllegalArgumentException if k is negative
+     */
+    public static List<WordEntry> top(Iterable<WordEntry> words, int k, String file) {
+        int fileId = FileTable.shared().find(file);
+        if (fileId < 0) {
+            if (k < 0) throw new IllegalArgumentException("negative count " + k);
+            return new ArrayList<>();
+        }
+        return top(words, k, w -> w.getLines(fileId).size());
+    }
+
+    /**
+     * @param words the words to rank
+     * @param k     how many words to keep
+     * @param count the number to rank each word by; words counted 0 are left out
+     * @return the k words with the highest count, highest first
+     * @throws IllegalArgumentException if k is negative
+     */
+    public static List<WordEntry> top(Iterable<WordEntry> words, int k, ToIntFunction<WordEntry> count) {
+        if (k < 0) throw new IllegalArgumentException("negative count " + k);
+        if (k == 0) return new ArrayList<>();
+
+        // the root is the weakest word kept: lowest count, and last in word order among equals
+        Comparator<Ranked> weakestFirst = Comparator.<Ranked>comparingInt(r -> r.count)
+                .thenComparing(r -> r.entry, Comparator.reverseOrder());
+        PriorityQueue<Ranked> heap = new PriorityQueue<>(Math.min(k, 1 << 16) + 1, weakestFirst);
+        for (WordEntry w : words) {
+            int c = count.applyAsInt(w);
+            if (c <= 0) continue;
+            if (heap.size() < k) {
+                heap.add(new Ranked(w, c));
+            } else {
+                Ranked weakest = heap.peek();
+                if (c > weakest.count || (c == weakest.count && w.compareTo(weakest.entry) < 0)) {
+                    heap.poll();
+                    heap.add(new Ranked(w, c));
+                }
+            }
+        }
+
+        List<Ranked> ranked = new ArrayList<>(heap);
+        ranked.sort(Collections.reverseOrder(weakestFirst));
+        List<WordEntry> result = new ArrayList<>(ranked.size());
+        for (Ranked r : ranked) {
+            result.add(r.entry);
+        }
+        return result;
+    }
+
+    // the count is taken once per word, since it can mean summing every file
+    private static final class Ranked {
+        final WordEntry entry;
+        final int count;
+
+        Ranked(WordEntry entry, int count) {
+            this.entry = entry;
+            this.count = count;
+        }
+    }
+}
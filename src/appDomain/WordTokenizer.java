@@ -0,0 +1,138 @@
+package appDomain;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits text into the words WordTracker indexes, in a single pass over the
+ * characters and without regular expressions.
+ * <p>
+ * Words are separated by whitespace (space, tab, form feed, vertical tab and
+ * the line terminators). Each word is lowercased and everything other than
+ * <code>a-z</code>, <code>0-9</code> and the apostrophe is dropped; words left
+ * empty are skipped. This gives the same words as splitting every line on
+ * <code>\\s+</code> and cleaning each token with
+ * <code>toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9']", "")</code>.
+ * <p>
+ * The current word is held in a reused buffer and exposed through the
+ * <code>CharSequence</code> methods, so no String is created unless the caller
+ * asks for one with {@link #toString()}.
+ */
+public class WordTokenizer implements CharSequence, Closeable {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final Reader in;
+    private final char[] chunk = new char[CHUNK_SIZE];
+    private int pos;
+    private int limit;
+
+    private char[] word = new char[32];
+    private int length;
+    private int wordLine;
+
+    private int line = 1;
+    // a \r was just read, so a following \n belongs to the same line break
+    private boolean skipLineFeed;
+
+    public WordTokenizer(Reader in) {
+        if (in == null) throw new NullPointerException();
+        this.in = in;
+    }
+
+    /**
+     * Advances to the next word.
+     *
+     * @return true if a word was found, false at the end of the input
+     * @throws IOException if the underlying reader fails
+     */
+    public boolean next() throws IOException {
+        length = 0;
+        while (true) {
+            if (pos == limit) {
+                int n = in.read(chunk, 0, CHUNK_SIZE);
+                if (n < 0) {
+                    limit = pos = 0;
+                    if (length == 0) return false;
+                    wordLine = line;
+                    return true;
+                }
+                pos = 0;
+                limit = n;
+                continue;
+            }
+
+            char c = chunk[pos++];
+            if (c == '\n' || c == '\r') {
+                boolean sameBreak = c == '\n' && skipLineFeed;
+                skipLineFeed = c == '\r';
+                if (sameBreak) continue;
+                if (length > 0) {
+                    wordLine = line++;
+                    return true;
+                }
+                line++;
+                continue;
+            }
+            skipLineFeed = false;
+
+            if (c == ' ' || c == '\t' || c == '\f' || c == '\u000B') {
+                if (length > 0) {
+                    wordLine = line;
+                    return true;
+                }
+                continue;
+            }
+
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            } else if (c >= 0x80) {
+                // a few non-ASCII letters lowercase to ASCII, e.g. the Kelvin sign to 'k'
+                c = Character.toLowerCase(c);
+            }
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '\'') {
+                if (length == word.length) {
+                    char[] bigger = new char[length * 2];
+                    System.arraycopy(word, 0, bigger, 0, length);
+                    word = bigger;
+                }
+                word[length++] = c;
+            }
+        }
+    }
+
+    /**
+     * @return the 1-based line number of the current word
+     */
+    public int getLineNumber() {
+        return wordLine;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException(String.valueOf(index));
+        return word[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) throw new IndexOutOfBoundsException();
+        return new String(word, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(word, 0, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
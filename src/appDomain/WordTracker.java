@@ -14,225 +14,1209 @@ package appDomain;
 
 
 import implementations.BSTree;
-import implementations.BSTreeNode;
+import implementations.HashIndex;
+import implementations.PersistentBSTree;
+import utilities.BSTreeADT;
 import utilities.Iterator;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.function.ToIntBiFunction;
+import java.util.function.ToIntFunction;
 
 
 public class WordTracker {
 
-    private static final String REPO_NAME = "repository.ser";
+    private static final String REPO_NAME = "repository.dat";
+    // Java-serialized repository written by older versions, migrated on first load
+    private static final String LEGACY_REPO_NAME = "repository.ser";
+    // runs since the last save of repository.dat, appended instead of rewriting it
+    private static final String LOG_NAME = "repository.log";
+    // locked by the process using the repository, so two never replay or append to the log at once
+    static final String LOCK_NAME = "repository.lock";
+    // the log is folded into repository.dat once it is larger than this or half the repository
+    private static final long MIN_COMPACT_BYTES = 1 << 20;
+    // words formatted per task when the report is rendered on several threads
+    private static final int REPORT_BATCH = 256;
+    // words listed by -pt when no count is given
+    private static final int DEFAULT_TOP = 10;
 
     private BSTree<WordEntry> tree;
+    private OccurrenceLog log;
+    private RepositoryLock lock;
+    // the last log record included in repository.dat, as loaded or last saved
+    private long savedSequence;
+    private boolean legacyLoaded;
+    private int reportThreads = 1;
+    // -stats or -stats:json: how to print the metrics once the command is done
+    private String metricsFormat;
+    // set when a server runs the command: the words it keeps in memory between commands
+    private final ResidentRepository resident;
+
+    // messages and console reports; a server sends them to the client running the command
+    private final PrintWriter out;
+    private final PrintWriter err;
 
     public static void main(String[] args) {
-        WordTracker wt = new WordTracker();
-        wt.start(args);
+        if (args != null && args.length > 0 && args[0].startsWith("-serve")) {
+            WordTrackerServer.serve(args);
+            return;
+        }
+        if (args != null && args.length > 0 && args[0].startsWith("-remote")) {
+            System.exit(WordTrackerServer.remote(args));
+        }
+        if (Boolean.getBoolean("wordtracker.metrics")) {
+            Metrics.shared().enable();
+        }
+        new WordTracker().run(args);
+    }
+
+    WordTracker() {
+        this(null, new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16), true),
+                new PrintWriter(System.err, true));
+    }
+
+    /**
+     * A tracker for one command run by a server against the words it keeps in
+     * memory.
+     *
+     * @param resident the server's words
+     * @param out      where reports and messages go
+     * @param err      where errors go
+     */
+    WordTracker(ResidentRepository resident, PrintWriter out, PrintWriter err) {
+        this.resident = resident;
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Runs one command, as given on the command line.
+     *
+     * @param args the command line arguments
+     */
+    void run(String[] args) {
+        try {
+            start(args);
+        } finally {
+            unlockRepo();
+        }
+        if (metricsFormat != null) {
+            Metrics metrics = Metrics.shared();
+            out.print(metricsFormat.equals("-stats:json") ? metrics.toJson() + System.lineSeparator() : metrics.summary());
+        }
+        out.flush();
+    }
+
+    /**
+     * Loads the repository and the log for a server to keep in memory.
+     *
+     * @return the loaded words
+     * @throws IOException if the repository or log cannot be read
+     */
+    ResidentRepository loadResident() throws IOException {
+        tree = loadRepo();
+        if (legacyLoaded) {
+            saveRepo();
+        }
+        ResidentRepository loaded = new ResidentRepository(PersistentBSTree.fromSorted(tree.iterator(), tree.size()),
+                log, new File(REPO_NAME), savedSequence);
+        tree = null;
+        return loaded;
     }
 
     private void start(String[] args) {
-        if (args == null || args.length < 2 || args.length > 3) {
+        if (args == null || args.length < 1) {
             printUsage("invalid arguments count");
             return;
         }
 
-        String inputPath = args[0];
-        String mode = args[1];
-        String outFile = null;
+        // every argument before the report mode is an input
+        int modeIndex = 0;
+        while (modeIndex < args.length && !isMode(args[modeIndex])) {
+            modeIndex++;
+        }
+        if (modeIndex == args.length) {
+            printUsage("missing -pf or -pl or -po or -pt after the inputs");
+            return;
+        }
 
-        if (!mode.equals("-pf") && !mode.equals("-pl") && !mode.equals("-po")) {
-            printUsage("2nd arg must be -pf or -pl or -po");
+        String mode = args[modeIndex];
+        if (isTopMode(mode) && (topCount(mode) < 0 || topFile(mode) != null && topFile(mode).isEmpty())) {
+            printUsage("bad top word count in " + mode + " (expected -pt<count> or -pt<count>:<file>)");
             return;
         }
+        String outFile = null;
+        boolean stats = false;
+        List<String> words = new ArrayList<>();
 
-        if (args.length == 3) {
-            String third = args[2];
-            if (!third.startsWith("-f")) {
-                printUsage("3rd arg must be -f<output.txt>");
+        for (int i = modeIndex + 1; i < args.length; i++) {
+            String opt = args[i];
+            if (opt.equals("-s")) {
+                stats = true;
+            } else if (opt.equals("-stats") || opt.equals("-stats:json")) {
+                metricsFormat = opt;
+                Metrics.shared().enable();
+            } else if (opt.startsWith("-w") && opt.length() > 2) {
+                words.add(opt.substring(2));
+            } else if (opt.startsWith("-j")) {
+                try {
+                    reportThreads = opt.length() == 2 ? Runtime.getRuntime().availableProcessors()
+                            : Integer.parseInt(opt.substring(2));
+                } catch (NumberFormatException e) {
+                    reportThreads = 0;
+                }
+                if (reportThreads < 1) {
+                    printUsage("bad thread count in " + opt);
+                    return;
+                }
+            } else if (opt.startsWith("-f") && outFile == null) {
+                outFile = opt.substring(2);
+                if (outFile.trim().isEmpty()) {
+                    printUsage("missing output file name after -f");
+                    return;
+                }
+            } else {
+                printUsage("unknown option " + opt + " (expected -f<output.txt>, -s, -stats, -w<word> or -j<threads>)");
                 return;
             }
-            outFile = third.substring(2);
-            if (outFile.trim().isEmpty()) {
-                printUsage("missing output file name after -f");
-                return;
+        }
+
+        // a server's commands run against the words it keeps, so only a command run on its own
+        // touches the files; it holds the lock until it is done, even while only reading
+        if (resident == null && !lockRepo()) {
+            return;
+        }
+
+        // with no inputs there is nothing to add, so the report is served from the saved index
+        if (modeIndex == 0) {
+            query(mode, words, outFile, stats);
+            return;
+        }
+
+        Map<Path, String> inputs;
+        try {
+            inputs = resolveInputs(Arrays.asList(args).subList(0, modeIndex));
+        } catch (IOException e) {
+            err.println("failed to read file: " + e.getMessage());
+            return;
+        }
+        if (inputs.isEmpty()) {
+            printUsage("no input files found");
+            return;
+        }
+
+        if (resident != null) {
+            ingestResident(inputs, mode, words, outFile, stats);
+            return;
+        }
+
+        try {
+            tree = loadRepo();
+        } catch (IOException e) {
+            err.println("failed to load repo: " + e.getMessage());
+            return;
+        }
+
+        BSTree<WordEntry> scanned;
+        try {
+            scanned = scanFiles(inputs);
+        } catch (IOException e) {
+            err.println("failed to read file: " + e.getMessage());
+            return;
+        }
+
+        // the run is logged before it is merged, since merging moves the scanned lines into the tree
+        boolean compact = legacyLoaded || log.length() >= compactThreshold(new File(REPO_NAME));
+        Metrics metrics = Metrics.shared();
+        if (!compact) {
+            long began = metrics.begin();
+            try {
+                log.append(scanned);
+                out.println("Logged to: " + log.getFile().getAbsolutePath());
+            } catch (IOException e) {
+                err.println("failed to save repo: " + e.getMessage());
+            }
+            metrics.end(Metrics.Phase.LOG, began);
+        }
+        long began = metrics.begin();
+        tree = BSTree.merge(tree, scanned, WordEntry::addAll);
+        metrics.end(Metrics.Phase.MERGE, began);
+        if (compact) {
+            try {
+                saveRepo();
+            } catch (IOException e) {
+                err.println("failed to save repo: " + e.getMessage());
             }
         }
 
-        tree = loadRepo();
+        report(tree, mode, words, outFile, stats);
+    }
 
+    // the scan runs without holding anything; only logging and publishing the run are serialized
+    private void ingestResident(Map<Path, String> inputs, String mode, List<String> words, String outFile, boolean stats) {
+        BSTree<WordEntry> scanned;
+        try {
+            scanned = scanFiles(inputs);
+        } catch (IOException e) {
+            err.println("failed to read file: " + e.getMessage());
+            return;
+        }
+        PersistentBSTree<WordEntry> current;
         try {
-            scanFile(inputPath);
+            current = resident.ingest(scanned);
+            out.println("Logged to: " + new File(LOG_NAME).getAbsolutePath());
         } catch (IOException e) {
-            System.err.println("failed to read file: " + e.getMessage());
+            err.println("failed to save repo: " + e.getMessage());
+            current = resident.snapshot();
+        }
+        report(current, mode, words, outFile, stats);
+    }
+
+    private void query(String mode, List<String> words, String outFile, boolean stats) {
+        if (resident != null) {
+            // a snapshot, so the report is consistent while other clients add runs
+            report(resident.snapshot(), mode, words, outFile, stats);
+            return;
+        }
+
+        // the index only holds what has been compacted, so it is skipped while runs are waiting in the log
+        RepositoryIndex opened = null;
+        if (new File(LOG_NAME).length() == 0) {
+            try {
+                opened = RepositoryIndex.open(new File(REPO_NAME));
+            } catch (IOException e) {
+                // no repository yet, or one saved without an offset table: load it the slow way
+            }
+        }
+        if (opened != null) {
+            // entries are decoded while the report is written, so a damaged entry can only be reported now
+            try (RepositoryIndex index = opened) {
+                // the index is a sorted table, not a tree, so it has no height to report
+                Metrics.shared().tree(index.size(), -1);
+                if (stats) {
+                    out.println("Words: " + index.size() + " (read from index)");
+                }
+                writeReport(mode, selectFromIndex(index, words), outFile);
+            } catch (IOException | UncheckedIOException e) {
+                err.println("failed to read repo: " + e.getMessage());
+            }
             return;
         }
 
         try {
-            saveRepo();
+            tree = loadRepo();
         } catch (IOException e) {
-            System.err.println("failed to save repo: " + e.getMessage());
+            err.println("failed to load repo: " + e.getMessage());
+            return;
+        }
+        // fold the log in now so the next query can use the index
+        if (legacyLoaded || log.length() > 0) {
+            try {
+                saveRepo();
+            } catch (IOException e) {
+                err.println("failed to save repo: " + e.getMessage());
+            }
+        }
+        report(tree, mode, words, outFile, stats);
+    }
+
+    private <T extends BSTreeADT<WordEntry> & Iterable<WordEntry>> void report(T tree, String mode, List<String> words,
+                                                                              String outFile, boolean stats) {
+        Metrics metrics = Metrics.shared();
+        if (metrics.isEnabled()) {
+            metrics.tree(tree.size(), tree.getHeight());
+        }
+        if (stats) {
+            printStats(tree);
+        }
+        writeReport(mode, select(tree, words), outFile);
+    }
+
+    // the whole tree, or only the requested words that it holds; a word ending in *
+    // selects every word starting with what comes before the *
+    private static <T extends BSTreeADT<WordEntry> & Iterable<WordEntry>> Iterable<WordEntry> select(T tree,
+                                                                                                   List<String> words) {
+        if (words.isEmpty()) {
+            return tree;
+        }
+        if (words.size() == 1 && isPrefix(words.get(0))) {
+            return once(tree.prefixIterator(prefixOf(words.get(0)), WordEntry.PREFIX_ORDER));
+        }
+        List<WordEntry> found = new ArrayList<>();
+        for (String word : words) {
+            if (isPrefix(word)) {
+                Iterator<WordEntry> it = tree.prefixIterator(prefixOf(word), WordEntry.PREFIX_ORDER);
+                while (it.hasNext()) {
+                    found.add(it.next());
+                }
+            } else {
+                WordEntry entry = tree.get(word, WordEntry.KEY_ORDER);
+                if (entry != null) found.add(entry);
+            }
+        }
+        return sortedDistinct(found);
+    }
+
+    // the same selection, read from the index
+    private static Iterable<WordEntry> selectFromIndex(RepositoryIndex index, List<String> words) throws IOException {
+        if (words.isEmpty()) {
+            return index;
+        }
+        if (words.size() == 1 && isPrefix(words.get(0))) {
+            return index.withPrefix(prefixOf(words.get(0)));
+        }
+        List<WordEntry> found = new ArrayList<>();
+        for (String word : words) {
+            if (isPrefix(word)) {
+                for (WordEntry entry : index.withPrefix(prefixOf(word))) {
+                    found.add(entry);
+                }
+            } else {
+                WordEntry entry = index.get(word);
+                if (entry != null) found.add(entry);
+            }
         }
+        return sortedDistinct(found);
+    }
 
-        String report = buildReport(mode);
+    private static boolean isPrefix(String word) {
+        return word.endsWith("*");
+    }
+
+    private static String prefixOf(String word) {
+        return word.substring(0, word.length() - 1);
+    }
 
+    // lets a for-each loop run over one of BSTree's own iterators; it can only be walked once
+    private static <E> Iterable<E> once(Iterator<E> it) {
+        return () -> new java.util.Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return it.next();
+            }
+        };
+    }
+
+    private static List<WordEntry> sortedDistinct(List<WordEntry> entries) {
+        return new ArrayList<>(new TreeSet<>(entries));
+    }
+
+    private void writeReport(String mode, Iterable<WordEntry> words, String outFile) {
+        long began = Metrics.shared().begin();
         if (outFile == null) {
-            System.out.print(report);
+            try {
+                writeReport(mode, words, out, reportThreads);
+                out.flush();
+            } catch (IOException e) {
+                err.println("failed to write report: " + e.getMessage());
+            }
         } else {
             try (BufferedWriter bw = Files.newBufferedWriter(Paths.get(outFile), StandardCharsets.UTF_8)) {
-                bw.write(report);
+                writeReport(mode, words, bw, reportThreads);
             } catch (IOException e) {
-                System.err.println("failed to write output file: " + e.getMessage());
+                err.println("failed to write output file: " + e.getMessage());
             }
         }
+        Metrics.shared().end(Metrics.Phase.REPORT, began);
+    }
+
+    static boolean isMode(String arg) {
+        return arg.equals("-pf") || arg.equals("-pl") || arg.equals("-po") || isTopMode(arg);
+    }
+
+    // -pt<count>[:<file>] lists the most frequent words, overall or in one file
+    private static boolean isTopMode(String mode) {
+        return mode.startsWith("-pt");
+    }
+
+    // -1 if the count is not a number
+    private static int topCount(String mode) {
+        int colon = mode.indexOf(':');
+        String count = colon < 0 ? mode.substring(3) : mode.substring(3, colon);
+        if (count.isEmpty()) return DEFAULT_TOP;
+        try {
+            return Integer.parseInt(count);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // null for the top words over every file
+    private static String topFile(String mode) {
+        int colon = mode.indexOf(':');
+        return colon < 0 ? null : mode.substring(colon + 1);
     }
 
     private void printUsage(String msg) {
-        System.err.println("Error: " + msg);
-        System.err.println("Usage: java -jar WordTracker.jar <input.txt> -pf|-pl|-po [-f<output.txt>]");
+        err.println("Error: " + msg);
+        err.println("Usage: java -jar WordTracker.jar [<input>...] -pf|-pl|-po|-pt[<count>][:<file>] [-f<output.txt>] [-s] [-j[<threads>]] [-w<word>]...");
+        err.println("  each input is a file, a directory (scanned recursively) or a glob such as res/*.txt");
+        err.println("  with no inputs the report is read straight from the saved repository");
+        err.println("  -pt<count> lists the most frequent words (" + DEFAULT_TOP + " if no count is given), -pt<count>:<file> those of one file");
+        err.println("  -w<word> limits the report to the given words; -w<prefix>* to words starting with prefix");
+        err.println("  -j<threads> formats the report on several threads (all cores if no number is given)");
+        err.println("  -serve[<port>] keeps the repository in memory and answers commands sent with -remote[<port>] <command>");
     }
 
-    @SuppressWarnings("unchecked")
-    private BSTree<WordEntry> loadRepo() {
+    // expands directories and globs into a sorted list of distinct regular files
+    // each file is named by its path below the folder or the pattern's base it was found
+    // under, or by its bare name if it was given itself; two files of the same name are an error,
+    // since their lines would be mixed into one entry
+    private static Map<Path, String> resolveInputs(List<String> inputs) throws IOException {
+        Map<Path, String> files = new TreeMap<>();
+        for (String input : inputs) {
+            int glob = firstGlobChar(input);
+            if (glob < 0) {
+                Path path = Paths.get(input);
+                if (Files.isDirectory(path)) {
+                    addRegularFiles(path, null, files);
+                } else if (Files.exists(path)) {
+                    files.putIfAbsent(path.toAbsolutePath().normalize(), path.getFileName().toString());
+                } else {
+                    throw new FileNotFoundException(input + " (No such file or directory)");
+                }
+            } else {
+                // the glob is matched against paths relative to the directory before its first wildcard
+                int cut = Math.max(input.lastIndexOf('/', glob), input.lastIndexOf(File.separatorChar, glob));
+                Path base = Paths.get(cut < 0 ? "." : input.substring(0, cut + 1));
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input.substring(cut + 1));
+                if (Files.isDirectory(base)) addRegularFiles(base, matcher, files);
+            }
+        }
+        Map<String, Path> named = new HashMap<>();
+        for (Map.Entry<Path, String> file : files.entrySet()) {
+            Path other = named.putIfAbsent(file.getValue(), file.getKey());
+            if (other != null) {
+                throw new IOException("two input files are named " + file.getValue() + " (" + other + " and "
+                        + file.getKey() + "); give the folder that holds both instead");
+            }
+        }
+        return files;
+    }
+
+    private static int firstGlobChar(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') return i;
+        }
+        return -1;
+    }
+
+    private static void addRegularFiles(Path dir, PathMatcher matcher, Map<Path, String> files) throws IOException {
+        List<Path> found;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            found = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path file : found) {
+            Path relative = dir.relativize(file);
+            if (matcher == null || matcher.matches(relative)) {
+                files.putIfAbsent(file.toAbsolutePath().normalize(), relative.toString().replace(File.separatorChar, '/'));
+            }
+        }
+    }
+
+    private void printStats(BSTreeADT<WordEntry> tree) {
+        int words = tree.size();
+        // an AVL tree with n nodes is never taller than 1.44 * log2(n + 2)
+        int bound = (int) Math.floor(1.4405 * Math.log(words + 2) / Math.log(2) - 0.3277);
+        out.println("Words: " + words + ", tree height: " + tree.getHeight() + " (AVL bound: " + bound + ")");
+    }
+
+    // false, with the reason printed, if another process is using the repository
+    private boolean lockRepo() {
+        try {
+            lock = RepositoryLock.acquire(new File(LOCK_NAME));
+            return true;
+        } catch (IOException e) {
+            err.println("failed to lock repo: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void unlockRepo() {
+        if (lock == null) {
+            return;
+        }
+        try {
+            lock.close();
+        } catch (IOException e) {
+            // the lock goes with the process anyway
+        }
+        lock = null;
+    }
+
+    // a damaged repository or log is reported rather than replaced with an empty tree,
+    // so the next save cannot overwrite what is left of it
+    private BSTree<WordEntry> loadRepo() throws IOException {
+        long began = Metrics.shared().begin();
         File f = new File(REPO_NAME);
+        BSTree<WordEntry> loaded;
+        long applied = 0;
+        if (f.exists()) {
+            applied = RepositoryFile.readSequence(f);
+            loaded = RepositoryFile.read(f);
+        } else {
+            loaded = loadLegacyRepo();
+        }
+        // repositories saved before the balanced tree existed are rebuilt once on load
+        if (!loaded.isBalanced()) {
+            loaded.rebalance();
+        }
+
+        log = new OccurrenceLog(new File(LOG_NAME));
+        savedSequence = applied;
+        BSTree<WordEntry> logged = log.replay(applied);
+        if (log.getDiscardedBytes() > 0) {
+            err.println("Dropped " + log.getDiscardedBytes() + " bytes of an unfinished record from "
+                    + log.getFile().getAbsolutePath());
+        }
+        BSTree<WordEntry> merged = logged.isEmpty() ? loaded : BSTree.merge(loaded, logged, WordEntry::addAll);
+        Metrics.shared().end(Metrics.Phase.LOAD, began);
+        return merged;
+    }
+
+    @SuppressWarnings("unchecked")
+    private BSTree<WordEntry> loadLegacyRepo() throws IOException {
+        File f = new File(LEGACY_REPO_NAME);
         if (!f.exists()) {
-            return new BSTree<>();
+            return new BSTree<>(true);
         }
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(f))) {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(f)))) {
             Object obj = ois.readObject();
+            if (!(obj instanceof BSTree)) throw new IOException(f + " does not hold a word tree");
+            Metrics.shared().read(f.length());
+            legacyLoaded = true;
             return (BSTree<WordEntry>) obj;
-        } catch (Exception e) {
-            return new BSTree<>();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(f + " is damaged: " + e.getMessage());
         }
     }
 
+    static long compactThreshold(File repository) {
+        return Math.max(MIN_COMPACT_BYTES, repository.length() / 2);
+    }
+
+    // rewrites repository.dat with everything in the tree, after which the log is no longer needed
     private void saveRepo() throws IOException {
         File f = new File(REPO_NAME);
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(f))) {
-            oos.writeObject(tree);
+        long began = Metrics.shared().begin();
+        RepositoryFile.write(tree, f, log.getLastSequence());
+        savedSequence = log.getLastSequence();
+        Metrics.shared().end(Metrics.Phase.SAVE, began);
+        log.clear();
+        out.println("Saved repo to: " + f.getAbsolutePath());
+        if (legacyLoaded) {
+            // the old file has been carried over; keep it as a backup so it is not migrated again
+            File legacy = new File(LEGACY_REPO_NAME);
+            Files.move(legacy.toPath(), Paths.get(LEGACY_REPO_NAME + ".bak"), StandardCopyOption.REPLACE_EXISTING);
+            out.println("Migrated " + legacy.getAbsolutePath() + " (kept as " + LEGACY_REPO_NAME + ".bak)");
+            legacyLoaded = false;
+        }
+    }
+
+    // each file is tokenized into its own tree on the fork/join pool, then the
+    // per-file trees are merged pairwise in order
+    private BSTree<WordEntry> scanFiles(Map<Path, String> inputs) throws IOException {
+        // ids are handed out here, in input order, so they do not depend on which scan finishes first
+        for (String name : inputs.values()) {
+            FileTable.shared().idOf(name);
+        }
+        List<Map.Entry<Path, String>> files = new ArrayList<>(inputs.entrySet());
+        long began = Metrics.shared().begin();
+        try {
+            if (files.size() == 1) {
+                return scanFile(files.get(0).getKey(), files.get(0).getValue());
+            }
+            return ForkJoinPool.commonPool().invoke(new ScanTask(files, 0, files.size()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            Metrics.shared().end(Metrics.Phase.SCAN, began);
         }
-        System.out.println("Saved repo to: " + f.getAbsolutePath());
     }
 
-    private void scanFile(String inputPath) throws IOException {
-        String fileNameOnly = new File(inputPath).getName();
+    // package-private for the benchmarks
+    static BSTree<WordEntry> scanFile(Path path) throws IOException {
+        return scanFile(path, path.getFileName().toString());
+    }
+
+    // the words are collected in a hash index, since a scan only looks words up, and sorted into
+    // a tree once at the end
+    private static BSTree<WordEntry> scanFile(Path path, String name) throws IOException {
+        int fileId = FileTable.shared().idOf(name);
+        // comparisons are only counted while metrics are on, so the usual order is used otherwise
+        Metrics metrics = Metrics.shared();
+        Metrics.CountingOrder<CharSequence, WordEntry> counting =
+                metrics.isEnabled() ? Metrics.counting(WordEntry.KEY_ORDER) : null;
+        ToIntBiFunction<CharSequence, WordEntry> order = counting != null ? counting : WordEntry.KEY_ORDER;
+        HashIndex<CharSequence, WordEntry> words = new HashIndex<>(WordEntry.KEY_HASH, order);
+        long tokens = 0;
+
+        try (WordTokenizer tokenizer = new WordTokenizer(Files.newBufferedReader(path, StandardCharsets.UTF_8))) {
+            while (tokenizer.next()) {
+                addOccurrence(words, tokenizer, fileId, tokenizer.getLineNumber());
+                tokens++;
+            }
+        }
+        if (counting != null) {
+            metrics.scanned(tokens, counting.count());
+        }
+        return words.toTree();
+    }
 
-        try (BufferedReader br = Files.newBufferedReader(Paths.get(inputPath), StandardCharsets.UTF_8)) {
-            String line;
-            int lineNum = 0;
+    // the tokenizer's buffer is only copied into a String when the word is new to the index
+    private static void addOccurrence(HashIndex<CharSequence, WordEntry> words, CharSequence word,
+                                      int file, int lineNum) {
+        words.computeIfAbsent(word, key -> new WordEntry(key.toString())).add(file, lineNum);
+    }
 
-            while ((line = br.readLine()) != null) {
-                lineNum++;
+    private static class ScanTask extends RecursiveTask<BSTree<WordEntry>> {
+        private static final long serialVersionUID = 1L;
 
-                String[] tokens = line.split("\\s+");
-                for (String token : tokens) {
-                    if (token == null || token.length() == 0) continue;
+        private final List<Map.Entry<Path, String>> files;
+        private final int from;
+        private final int to;
 
-                    String clean = token.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9']", "");
-                    if (clean.length() == 0) continue;
+        ScanTask(List<Map.Entry<Path, String>> files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
 
-                    addOccurrence(clean, fileNameOnly, lineNum);
+        @Override
+        protected BSTree<WordEntry> compute() {
+            if (to - from == 1) {
+                try {
+                    return scanFile(files.get(from).getKey(), files.get(from).getValue());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
             }
+            int mid = (from + to) >>> 1;
+            ScanTask left = new ScanTask(files, from, mid);
+            left.fork();
+            BSTree<WordEntry> right = new ScanTask(files, mid, to).compute();
+            return BSTree.merge(left.join(), right, WordEntry::addAll);
         }
     }
 
-    private void addOccurrence(String word, String file, int lineNum) {
-        WordEntry look = new WordEntry(word);
-        BSTreeNode<WordEntry> node = tree.search(look);
+    // each word is written as soon as the walk reaches it, so memory use does not
+    // depend on the size of the report and output starts straight away. With more
+    // than one thread, runs of REPORT_BATCH words are formatted on a pool and
+    // written in order; at most two runs per thread are held at a time. Package-private
+    // for the benchmarks.
+    static void writeReport(String mode, Iterable<WordEntry> words, Writer out, int threads)
+            throws IOException {
+        if (isTopMode(mode)) {
+            writeTopReport(mode, words, out);
+            return;
+        }
+        ReportFormat format = new ReportFormat(mode);
+        if (threads <= 1) {
+            char[] digits = new char[11];
+            for (WordEntry w : words) {
+                format.write(w, out, digits);
+            }
+            return;
+        }
 
-        if (node == null) {
-            WordEntry we = new WordEntry(word);
-            we.add(file, lineNum);
-            tree.add(we);
-        } else {
-            node.getElement().add(file, lineNum);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            ArrayDeque<Future<CharArrayWriter>> pending = new ArrayDeque<>();
+            java.util.Iterator<Iterable<WordEntry>> batches = batches(words);
+            while (batches.hasNext()) {
+                pending.add(pool.submit(format.render(batches.next())));
+                if (pending.size() >= threads * 2) {
+                    writeNext(pending, out);
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeNext(pending, out);
+            }
+        } finally {
+            pool.shutdownNow();
         }
     }
 
-    private String buildReport(String mode) {
-        StringBuilder sb = new StringBuilder();
+    // one pass over the words with a heap of the best so far; the report is the ranked list
+    private static void writeTopReport(String mode, Iterable<WordEntry> words, Writer out) throws IOException {
+        int k = topCount(mode);
+        String file = topFile(mode);
+        List<WordEntry> top = file == null ? TopWords.top(words, k) : TopWords.top(words, k, file);
+        String newLine = System.lineSeparator();
 
-        Iterator<WordEntry> it = tree.inorderIterator();
-        while (it.hasNext()) {
-            WordEntry w = it.next();
+        out.write("Top " + k + " words" + (file == null ? "" : " in " + file) + ":" + newLine);
+        for (int i = 0; i < top.size(); i++) {
+            WordEntry w = top.get(i);
+            out.write((i + 1) + ". " + w.getWord());
+            out.write(file == null ? " (total: " + w.total() + ")" : " (freq: " + w.getLines(file).size() + ")");
+            out.write(newLine);
+        }
+    }
 
-            List<String> files = new ArrayList<>(w.map.keySet());
-            Collections.sort(files);
+    // consecutive runs of words; runs of the index are decoded by the task that formats them
+    private static java.util.Iterator<Iterable<WordEntry>> batches(Iterable<WordEntry> words) {
+        if (words instanceof RepositoryIndex) {
+            RepositoryIndex index = (RepositoryIndex) words;
+            return new java.util.Iterator<Iterable<WordEntry>>() {
+                private int from;
 
-            if (mode.equals("-pf")) {
-                sb.append(w.word).append(": ");
-                for (int i = 0; i < files.size(); i++) {
-                    if (i > 0) sb.append(", ");
-                    sb.append(files.get(i));
+                @Override
+                public boolean hasNext() {
+                    return from < index.size();
                 }
-                sb.append(System.lineSeparator());
-            } else if (mode.equals("-pl")) {
-                sb.append(w.word).append(":").append(System.lineSeparator());
-                for (String f : files) {
-                    List<Integer> lines = new ArrayList<>(w.map.get(f));
-                    Collections.sort(lines);
-                    sb.append("  ").append(f).append(" [lines: ");
-                    for (int i = 0; i < lines.size(); i++) {
-                        if (i > 0) sb.append(", ");
-                        sb.append(lines.get(i));
-                    }
-                    sb.append("]").append(System.lineSeparator());
-                }
-            } else if (mode.equals("-po")) {
-                int total = w.total();
-                sb.append(w.word).append(" (total: ").append(total).append("):").append(System.lineSeparator());
-                for (String f : files) {
-                    List<Integer> lines = new ArrayList<>(w.map.get(f));
-                    Collections.sort(lines);
-                    sb.append("  ").append(f).append(" [lines: ");
-                    for (int i = 0; i < lines.size(); i++) {
-                        if (i > 0) sb.append(", ");
-                        sb.append(lines.get(i));
-                    }
-                    sb.append("] (freq: ").append(lines.size()).append(")").append(System.lineSeparator());
+
+                @Override
+                public Iterable<WordEntry> next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    int to = Math.min(from + REPORT_BATCH, index.size());
+                    Iterable<WordEntry> range = index.range(from, to);
+                    from = to;
+                    return range;
+                }
+            };
+        }
+        java.util.Iterator<WordEntry> it = words.iterator();
+        return new java.util.Iterator<Iterable<WordEntry>>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Iterable<WordEntry> next() {
+                List<WordEntry> batch = new ArrayList<>(REPORT_BATCH);
+                while (batch.size() < REPORT_BATCH && it.hasNext()) {
+                    batch.add(it.next());
                 }
+                if (batch.isEmpty()) throw new NoSuchElementException();
+                return batch;
             }
+        };
+    }
+
+    private static void writeNext(ArrayDeque<Future<CharArrayWriter>> pending, Writer out) throws IOException {
+        try {
+            pending.poll().get().writeTo(out);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while writing the report");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
         }
+    }
+
+    // formats words for one report mode; safe to share between threads
+    private static class ReportFormat {
+        private final boolean filesOnly;
+        private final boolean counts;
+        // file names are only looked up here; ranks give their sorted order without comparing strings
+        private final String[] names;
+        private final int[] rank;
+        private final String newLine = System.lineSeparator();
 
-        return sb.toString();
+        ReportFormat(String mode) {
+            filesOnly = mode.equals("-pf");
+            counts = mode.equals("-po");
+            FileTable table = FileTable.shared();
+            synchronized (table) {
+                names = table.names();
+                rank = table.ranks();
+            }
+        }
+
+        Callable<CharArrayWriter> render(Iterable<WordEntry> batch) {
+            return () -> {
+                CharArrayWriter buffer = new CharArrayWriter(REPORT_BATCH * 64);
+                char[] digits = new char[11];
+                for (WordEntry w : batch) {
+                    write(w, buffer, digits);
+                }
+                return buffer;
+            };
+        }
+
+        void write(WordEntry w, Writer out, char[] digits) throws IOException {
+            int[] files = w.nameOrder(rank);
+
+            if (filesOnly) {
+                out.write(w.word);
+                out.write(": ");
+                for (int i = 0; i < files.length; i++) {
+                    if (i > 0) out.write(", ");
+                    out.write(names[w.fileIds[files[i]]]);
+                }
+                out.write(newLine);
+                return;
+            }
+
+            out.write(w.word);
+            if (counts) {
+                out.write(" (total: ");
+                writeInt(out, w.total(), digits);
+                out.write(")");
+            }
+            out.write(":");
+            out.write(newLine);
+            for (int f : files) {
+                Postings lines = w.lines[f];
+                out.write("  ");
+                out.write(names[w.fileIds[f]]);
+                out.write(" [lines: ");
+                for (int i = 0; i < lines.size(); i++) {
+                    if (i > 0) out.write(", ");
+                    writeInt(out, lines.get(i), digits);
+                }
+                out.write("]");
+                if (counts) {
+                    out.write(" (freq: ");
+                    writeInt(out, lines.size(), digits);
+                    out.write(")");
+                }
+                out.write(newLine);
+            }
+        }
+
+        // formats a non-negative number into the scratch buffer instead of creating a String
+        private static void writeInt(Writer out, int value, char[] digits) throws IOException {
+            int pos = digits.length;
+            do {
+                digits[--pos] = (char) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            out.write(digits, pos, digits.length - pos);
+        }
     }
 
     public static class WordEntry implements Serializable, Comparable<WordEntry> {
         private static final long serialVersionUID = 2L;
 
+        // files are saved by name, in a map declared by its interface, so streams from
+        // before file ids and Postings existed still match and are converted on read
+        private static final ObjectStreamField[] serialPersistentFields = {
+                new ObjectStreamField("word", String.class),
+                new ObjectStreamField("map", Map.class)
+        };
+
+        // orders a bare word against an entry the same way compareTo orders two entries
+        public static final ToIntBiFunction<CharSequence, WordEntry> KEY_ORDER =
+                (key, entry) -> compareKey(key, entry, false);
+
+        // hashes a bare word so that the words KEY_ORDER finds equal hash the same
+        public static final ToIntFunction<CharSequence> KEY_HASH = WordEntry::hashIgnoreCase;
+
+        // 0 for entries whose word starts with the key, ignoring case; otherwise orders the
+        // key against the entry, so the matching entries are one run of the tree
+        public static final ToIntBiFunction<CharSequence, WordEntry> PREFIX_ORDER =
+                (prefix, entry) -> compareKey(prefix, entry, true);
+
         private String word;
-        private Map<String, List<Integer>> map;
+        // the word with its letters lowercased, one byte per character, or null if it has
+        // characters outside ASCII. Entries that both have one are ordered by it, which gives
+        // the same order as compareToIgnoreCase without folding case on every comparison
+        private transient byte[] key;
+        // ids from FileTable.shared() in ascending order, with each file's lines at the same index
+        private transient int[] fileIds;
+        private transient Postings[] lines;
+        private transient int files;
 
         public WordEntry(String w) {
             this.word = w;
-            this.map = new HashMap<>();
+            this.key = fold(w);
+            this.fileIds = new int[2];
+            this.lines = new Postings[2];
+        }
+
+        public String getWord() {
+            return word;
+        }
+
+        // the number of files the word is in
+        public int fileCount() {
+            return files;
+        }
+
+        // the id of the index'th file, in ascending id order
+        public int fileId(int index) {
+            if (index < 0 || index >= files) throw new IndexOutOfBoundsException(String.valueOf(index));
+            return fileIds[index];
+        }
+
+        // the lines of the index'th file
+        public Postings lines(int index) {
+            if (index < 0 || index >= files) throw new IndexOutOfBoundsException(String.valueOf(index));
+            return lines[index];
+        }
+
+        // the file names, resolved through the shared file table
+        public Set<String> getFiles() {
+            FileTable table = FileTable.shared();
+            Set<String> names = new HashSet<>();
+            for (int i = 0; i < files; i++) {
+                names.add(table.nameOf(fileIds[i]));
+            }
+            return Collections.unmodifiableSet(names);
+        }
+
+        // the lines in ascending order, empty if the word is not in the file
+        public Postings getLines(String file) {
+            return getLines(FileTable.shared().find(file));
+        }
+
+        public Postings getLines(int fileId) {
+            int i = indexOf(fileId);
+            return i < 0 ? Postings.EMPTY : lines[i];
         }
 
         public void add(String file, int line) {
-            List<Integer> lines = map.get(file);
-            if (lines == null) {
-                lines = new ArrayList<>();
-                map.put(file, lines);
+            add(FileTable.shared().idOf(file), line);
+        }
+
+        public void add(int fileId, int line) {
+            // a file is scanned from top to bottom, so its id is almost always the last one added
+            int i = files > 0 && fileIds[files - 1] == fileId ? files - 1 : indexOf(fileId);
+            if (i < 0) {
+                i = insertFile(-(i + 1), fileId, new Postings());
             }
-            lines.add(line);
+            lines[i].add(line);
+        }
+
+        // takes over a complete list of lines for a file, as decoded from the repository
+        void add(int fileId, Postings fileLines) {
+            int i = indexOf(fileId);
+            if (i < 0) {
+                insertFile(-(i + 1), fileId, fileLines);
+            } else {
+                lines[i].addAll(fileLines);
+            }
+        }
+
+        // moves the occurrences of an equal entry into this one; returns this entry
+        public WordEntry addAll(WordEntry other) {
+            if (other.files == 0) return this;
+            if (files == 0) {
+                fileIds = other.fileIds;
+                lines = other.lines;
+                files = other.files;
+                return this;
+            }
+            // both id lists are sorted, so they are merged in one pass
+            int[] mergedIds = new int[files + other.files];
+            Postings[] mergedLines = new Postings[mergedIds.length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < files || j < other.files) {
+                if (j == other.files || (i < files && fileIds[i] < other.fileIds[j])) {
+                    mergedIds[k] = fileIds[i];
+                    mergedLines[k++] = lines[i++];
+                } else if (i == files || other.fileIds[j] < fileIds[i]) {
+                    mergedIds[k] = other.fileIds[j];
+                    mergedLines[k++] = other.lines[j++];
+                } else {
+                    lines[i].addAll(other.lines[j++]);
+                    mergedIds[k] = fileIds[i];
+                    mergedLines[k++] = lines[i++];
+                }
+            }
+            fileIds = mergedIds;
+            lines = mergedLines;
+            files = k;
+            return this;
+        }
+
+        // a new entry with the occurrences of both, leaving this one as it is, so a snapshot that
+        // holds it does not change; the lists of the other entry may be taken over
+        public WordEntry union(WordEntry other) {
+            WordEntry merged = new WordEntry(word);
+            merged.fileIds = Arrays.copyOf(fileIds, Math.max(files + other.files, 2));
+            merged.lines = Arrays.copyOf(lines, merged.fileIds.length);
+            merged.files = files;
+            for (int j = 0; j < other.files; j++) {
+                int i = merged.indexOf(other.fileIds[j]);
+                if (i < 0) {
+                    merged.insertFile(-(i + 1), other.fileIds[j], other.lines[j]);
+                } else {
+                    merged.lines[i] = Postings.merge(merged.lines[i], other.lines[j]);
+                }
+            }
+            return merged;
         }
 
         public int total() {
             int c = 0;
-            for (List<Integer> lines : map.values()) {
-                c += lines.size();
+            for (int i = 0; i < files; i++) {
+                c += lines[i].size();
             }
             return c;
         }
 
+        // the indexes of the files sorted by name, given FileTable.ranks()
+        int[] nameOrder(int[] rank) {
+            int[] order = new int[files];
+            boolean sorted = true;
+            for (int i = 0; i < files; i++) {
+                order[i] = i;
+                if (i > 0 && rank[fileIds[i]] < rank[fileIds[i - 1]]) sorted = false;
+            }
+            if (!sorted) {
+                long[] keys = new long[files];
+                for (int i = 0; i < files; i++) {
+                    keys[i] = (long) rank[fileIds[i]] << 32 | i;
+                }
+                Arrays.sort(keys);
+                for (int i = 0; i < files; i++) {
+                    order[i] = (int) keys[i];
+                }
+            }
+            return order;
+        }
+
+        private int indexOf(int fileId) {
+            return Arrays.binarySearch(fileIds, 0, files, fileId);
+        }
+
+        private int insertFile(int at, int fileId, Postings fileLines) {
+            if (files == fileIds.length) {
+                fileIds = Arrays.copyOf(fileIds, files * 2);
+                lines = Arrays.copyOf(lines, files * 2);
+            }
+            System.arraycopy(fileIds, at, fileIds, at + 1, files - at);
+            System.arraycopy(lines, at, lines, at + 1, files - at);
+            fileIds[at] = fileId;
+            lines[at] = fileLines;
+            files++;
+            return at;
+        }
+
+        // same folding as String.compareToIgnoreCase, without needing the key as a String
+        static int compareIgnoreCase(CharSequence a, String b) {
+            int n1 = a.length();
+            int n2 = b.length();
+            int cmp = compareFolded(a, b, Math.min(n1, n2));
+            return cmp != 0 ? cmp : n1 - n2;
+        }
+
+        // a word shorter than the prefix that matches it as far as it goes sorts before every match
+        static int comparePrefixIgnoreCase(CharSequence prefix, String word) {
+            int cmp = compareFolded(prefix, word, Math.min(prefix.length(), word.length()));
+            if (cmp != 0) return cmp;
+            return word.length() >= prefix.length() ? 0 : 1;
+        }
+
+        // the key of a word, or null if it is not all ASCII
+        private static byte[] fold(String word) {
+            byte[] key = new byte[word.length()];
+            for (int i = 0; i < key.length; i++) {
+                char c = word.charAt(i);
+                if (c >= 0x80) return null;
+                if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+                key[i] = (byte) c;
+            }
+            return key;
+        }
+
+        // compareIgnoreCase, or comparePrefixIgnoreCase if prefix is set, against the entry's
+        // key while the word stays in ASCII, folding only the word's characters on the way
+        private static int compareKey(CharSequence word, WordEntry entry, boolean prefix) {
+            byte[] key = entry.key;
+            if (key != null) {
+                int n1 = word.length();
+                int n2 = key.length;
+                for (int i = 0, n = Math.min(n1, n2); i < n; i++) {
+                    int c = word.charAt(i);
+                    if (c >= 'A' && c <= 'Z') {
+                        c += 'a' - 'A';
+                    } else if (c >= 0x80) {
+                        // some characters outside ASCII fold to ASCII letters, so these take the long way
+                        key = null;
+                        break;
+                    }
+                    int cmp = c - (key[i] & 0xff);
+                    if (cmp != 0) return cmp;
+                }
+                if (key != null) {
+                    if (prefix) return n2 >= n1 ? 0 : 1;
+                    return n1 - n2;
+                }
+            }
+            return prefix ? comparePrefixIgnoreCase(word, entry.word) : compareIgnoreCase(word, entry.word);
+        }
+
+        // unsigned, byte by byte, then by length
+        private static int compareKeys(byte[] a, byte[] b) {
+            for (int i = 0, n = Math.min(a.length, b.length); i < n; i++) {
+                int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+                if (cmp != 0) return cmp;
+            }
+            return a.length - b.length;
+        }
+
+        // folds each character as compareFolded does before it compares two that differ
+        static int hashIgnoreCase(CharSequence word) {
+            int h = 0;
+            for (int i = 0, n = word.length(); i < n; i++) {
+                char c = word.charAt(i);
+                if (c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                } else if (c >= 0x80) {
+                    c = Character.toLowerCase(Character.toUpperCase(c));
+                }
+                h = 31 * h + c;
+            }
+            return h;
+        }
+
+        private static int compareFolded(CharSequence a, String b, int length) {
+            for (int i = 0; i < length; i++) {
+                char c1 = a.charAt(i);
+                char c2 = b.charAt(i);
+                if (c1 != c2) {
+                    c1 = Character.toUpperCase(c1);
+                    c2 = Character.toUpperCase(c2);
+                    if (c1 != c2) {
+                        c1 = Character.toLowerCase(c1);
+                        c2 = Character.toLowerCase(c2);
+                        if (c1 != c2) return c1 - c2;
+                    }
+                }
+            }
+            return 0;
+        }
+
         @Override
         public int compareTo(WordEntry other) {
             if (other == null) return 1;
+            if (key != null && other.key != null) return compareKeys(key, other.key);
             return this.word.compareToIgnoreCase(other.word);
         }
 
@@ -248,5 +1232,50 @@ public class WordTracker {
         public int hashCode() {
             return Objects.hash(word);
         }
+
+        // ids only mean something inside one run, so the files are written by name
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            FileTable table = FileTable.shared();
+            Map<String, Postings> map = new HashMap<>();
+            for (int i = 0; i < files; i++) {
+                map.put(table.nameOf(fileIds[i]), lines[i]);
+            }
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("word", word);
+            fields.put("map", map);
+            out.writeFields();
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            ObjectInputStream.GetField fields = in.readFields();
+            word = (String) fields.get("word", null);
+            Object saved = fields.get("map", null);
+            if (word == null || !(saved instanceof Map)) throw new InvalidObjectException("entry without word or files");
+            key = fold(word);
+
+            Map<?, ?> map = (Map<?, ?>) saved;
+            fileIds = new int[Math.max(map.size(), 1)];
+            lines = new Postings[fileIds.length];
+            files = 0;
+            FileTable table = FileTable.shared();
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                Object value = e.getValue();
+                if (!(e.getKey() instanceof String)) throw new InvalidObjectException("bad file name for " + word);
+                int id = table.idOf((String) e.getKey());
+                if (value instanceof Postings) {
+                    add(id, (Postings) value);
+                } else if (value instanceof Collection) {
+                    // List<Integer> values, saved before Postings existed
+                    Postings postings = new Postings(((Collection<?>) value).size());
+                    for (Object line : (Collection<?>) value) {
+                        if (!(line instanceof Integer)) throw new InvalidObjectException("bad line for " + word);
+                        postings.add((Integer) line);
+                    }
+                    add(id, postings);
+                } else {
+                    throw new InvalidObjectException("bad lines for " + word);
+                }
+            }
+        }
     }
 }
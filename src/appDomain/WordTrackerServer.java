@@ -0,0 +1,398 @@
+package appDomain;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the repository in memory and runs WordTracker commands sent by
+ * clients, so a query does not pay for starting a JVM and loading the
+ * repository each time.
+ * <p>
+ * The server only listens on the loopback address, and only answers clients
+ * that know the token it writes at startup to a file in the user's home folder
+ * that only the user can read, so other users of the machine cannot send it
+ * commands. It holds the repository lock while it runs, so a command run on
+ * its own refuses to start instead of changing the files underneath it. Each
+ * connection carries one command:
+ * <pre>
+ * request:  token, charset name, argument count (4 bytes), then each
+ *           argument, strings written with DataOutput.writeUTF
+ * response: frames of a kind byte (1 for output, 2 for errors), a length
+ *           (4 bytes) and that many bytes of text in the requested charset,
+ *           ended by a single kind byte 0
+ * </pre>
+ * Each connection runs on its own thread. Reports read a snapshot of the
+ * words, so they never wait for, or see part of, a run being added; runs are
+ * added one at a time, each appended to the log before its client is
+ * answered. The repository is rewritten from a snapshot on a background
+ * thread once the log has grown, while commands carry on. Input and output
+ * file names are resolved by the client, since the server may have been
+ * started in another directory.
+ */
+public class WordTrackerServer {
+
+    public static final int DEFAULT_PORT = 7304;
+
+    private static final byte END = 0;
+    private static final byte OUT = 1;
+    private static final byte ERR = 2;
+    // sent as the only argument, saves the repository and stops the server
+    private static final String STOP = "-stop";
+    // a client must send its request within this many milliseconds, so a silent one cannot hold a thread
+    private static final int REQUEST_TIMEOUT = 10000;
+
+    private final ResidentRepository repository;
+    private final ServerSocket socket;
+    private final byte[] token;
+    private final ExecutorService saver = Executors.newSingleThreadExecutor(task -> daemon(task, "repository saver"));
+    private final AtomicBoolean saveQueued = new AtomicBoolean();
+    private volatile boolean stopping;
+
+    private WordTrackerServer(ResidentRepository repository, ServerSocket socket, String token) {
+        this.repository = repository;
+        this.socket = socket;
+        this.token = token.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Loads the repository and answers commands until a client sends -stop.
+     *
+     * @param args -serve, optionally followed by the port number
+     */
+    static void serve(String[] args) {
+        int port = port(args[0], "-serve");
+        if (port < 0 || args.length > 1) {
+            System.err.println("Error: expected -serve or -serve<port> on its own");
+            return;
+        }
+        // a server runs for a long time, so its counters are always kept for JMX clients and -stats
+        Metrics.shared().enable();
+        RepositoryLock lock;
+        try {
+            lock = RepositoryLock.acquire(new File(WordTracker.LOCK_NAME));
+        } catch (IOException e) {
+            System.err.println("failed to lock repo: " + e.getMessage());
+            return;
+        }
+        try {
+            listen(port);
+        } finally {
+            try {
+                lock.close();
+            } catch (IOException e) {
+                // the lock goes with the process anyway
+            }
+        }
+    }
+
+    private static void listen(int port) {
+        ResidentRepository repository;
+        try {
+            repository = new WordTracker().loadResident();
+        } catch (IOException e) {
+            System.err.println("failed to load repo: " + e.getMessage());
+            return;
+        }
+
+        File tokenFile = tokenFile(port);
+        try (ServerSocket socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            String token = writeToken(tokenFile);
+            System.out.println("Serving on " + socket.getLocalSocketAddress()
+                    + " (send commands with -remote" + port + ", stop with -remote" + port + " " + STOP + ")");
+            WordTrackerServer server = new WordTrackerServer(repository, socket, token);
+            server.acceptLoop();
+        } catch (IOException e) {
+            System.err.println("server failed: " + e.getMessage());
+        } finally {
+            tokenFile.delete();
+        }
+    }
+
+    /**
+     * Sends one command to a running server and copies its answer to this
+     * process's output and error streams.
+     *
+     * @param args -remote, optionally followed by the port number, then the
+     *             command as it would be given without a server
+     * @return the exit status for the client process
+     */
+    static int remote(String[] args) {
+        int port = port(args[0], "-remote");
+        if (port < 0) {
+            System.err.println("Error: bad port in " + args[0]);
+            return 2;
+        }
+        String[] command = resolvePaths(args);
+        String token;
+        try {
+            token = new String(Files.readAllBytes(tokenFile(port).toPath()), StandardCharsets.US_ASCII);
+        } catch (NoSuchFileException e) {
+            System.err.println("no server on port " + port + " (start one with -serve" + port + ")");
+            return 1;
+        } catch (IOException e) {
+            System.err.println("failed to read the server token: " + e.getMessage());
+            return 1;
+        }
+
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataOutputStream request = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            request.writeUTF(token);
+            request.writeUTF(Charset.defaultCharset().name());
+            request.writeInt(command.length);
+            for (String arg : command) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 1 << 16));
+            byte[] buffer = new byte[1 << 16];
+            int status = 0;
+            for (byte kind = in.readByte(); kind != END; kind = in.readByte()) {
+                PrintStream target = kind == ERR ? System.err : System.out;
+                if (kind == ERR) status = 1;
+                for (int left = in.readInt(); left > 0; ) {
+                    int n = in.read(buffer, 0, Math.min(left, buffer.length));
+                    if (n < 0) throw new EOFException("answer ends early");
+                    target.write(buffer, 0, n);
+                    left -= n;
+                }
+            }
+            System.out.flush();
+            return status;
+        } catch (ConnectException e) {
+            System.err.println("no server on port " + port + " (start one with -serve" + port + ")");
+            return 1;
+        } catch (IOException e) {
+            System.err.println("lost connection to server: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private void acceptLoop() throws IOException {
+        ExecutorService clients = Executors.newCachedThreadPool(task -> daemon(task, "client"));
+        try {
+            while (!stopping) {
+                Socket client;
+                try {
+                    client = socket.accept();
+                } catch (SocketException e) {
+                    if (stopping) break;
+                    throw e;
+                }
+                clients.execute(() -> handle(client));
+            }
+        } finally {
+            clients.shutdown();
+            saver.shutdown();
+            try {
+                saver.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void handle(Socket client) {
+        try (Socket s = client) {
+            s.setSoTimeout(REQUEST_TIMEOUT);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream frames = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 1 << 16));
+            if (!MessageDigest.isEqual(in.readUTF().getBytes(StandardCharsets.US_ASCII), token)) {
+                // nothing else is read, and no command runs, for a client without the token
+                byte[] refused = ("wrong server token (use -remote as the user who started the server)"
+                        + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII);
+                new Channel(frames, ERR).write(refused, 0, refused.length);
+                frames.writeByte(END);
+                frames.flush();
+                return;
+            }
+            Charset charset = charset(in.readUTF());
+            int count = in.readInt();
+            if (count < 0 || count > 1 << 16) throw new IOException("bad argument count " + count);
+            String[] args = new String[count];
+            for (int i = 0; i < count; i++) {
+                args[i] = in.readUTF();
+            }
+
+            PrintWriter out = new PrintWriter(new BufferedWriter(
+                    new OutputStreamWriter(new Channel(frames, OUT), charset), 1 << 16), true);
+            PrintWriter err = new PrintWriter(new OutputStreamWriter(new Channel(frames, ERR), charset), true);
+            if (args.length == 1 && args[0].equals(STOP)) {
+                stop(out, err);
+            } else {
+                new WordTracker(repository, out, err).run(args);
+            }
+            out.flush();
+            err.flush();
+            frames.writeByte(END);
+            frames.flush();
+        } catch (IOException e) {
+            // the client went away before its answer was sent; there is no one to tell
+        }
+        scheduleSave();
+    }
+
+    // runs still being added when the server stops are in the log, and are replayed by the next load
+    private void stop(PrintWriter out, PrintWriter err) {
+        stopping = true;
+        try {
+            if (repository.compact()) out.println("Saved repo to: " + repository.getFile().getAbsolutePath());
+        } catch (IOException e) {
+            err.println("failed to save repo: " + e.getMessage());
+        }
+        out.println("Server stopped");
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+    // at most one save waits at a time; it checks the log size when it runs, not when it was queued
+    private void scheduleSave() {
+        if (stopping || !saveQueued.compareAndSet(false, true)) return;
+        saver.execute(() -> {
+            saveQueued.set(false);
+            if (stopping || !repository.needsCompaction()) return;
+            try {
+                if (repository.compact()) System.out.println("Saved repo to: " + repository.getFile().getAbsolutePath());
+            } catch (IOException e) {
+                System.err.println("failed to save repo: " + e.getMessage());
+            }
+        });
+    }
+
+    // the client may run in another directory, so the token is kept in the user's home folder
+    private static File tokenFile(int port) {
+        return new File(new File(System.getProperty("user.home"), ".wordtracker"), "server-" + port + ".token");
+    }
+
+    // a new random token in a file only the user can read; a file left by a server that died is replaced
+    private static String writeToken(File file) throws IOException {
+        byte[] random = new byte[24];
+        new SecureRandom().nextBytes(random);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(random);
+
+        Path path = file.toPath();
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        Files.createDirectories(path.getParent(), posix ? ownerOnly("rwx------") : new FileAttribute<?>[0]);
+        Files.deleteIfExists(path);
+        // created here rather than opened, so the token never goes into a file someone else put in its place
+        try (SeekableByteChannel channel = Files.newByteChannel(path,
+                EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE),
+                posix ? ownerOnly("rw-------") : new FileAttribute<?>[0])) {
+            if (!posix) {
+                // Windows: the home folder is private to the user already; this also drops any other readers
+                file.setReadable(false, false);
+                file.setReadable(true, true);
+            }
+            channel.write(ByteBuffer.wrap(token.getBytes(StandardCharsets.US_ASCII)));
+        }
+        return token;
+    }
+
+    private static FileAttribute<?>[] ownerOnly(String permissions) {
+        return new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(permissions)) };
+    }
+
+    // the server runs in another directory, so inputs and the output file are sent as absolute paths
+    private static String[] resolvePaths(String[] args) {
+        String[] command = new String[args.length - 1];
+        boolean inputs = true;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (WordTracker.isMode(arg)) inputs = false;
+            if (inputs && !arg.equals(STOP)) {
+                arg = new File(arg).getAbsolutePath();
+            } else if (!inputs && arg.startsWith("-f") && !arg.substring(2).trim().isEmpty()) {
+                arg = "-f" + new File(arg.substring(2)).getAbsolutePath();
+            }
+            command[i - 1] = arg;
+        }
+        return command;
+    }
+
+    // -1 if the text after the flag is not a port number
+    private static int port(String arg, String flag) {
+        String number = arg.substring(flag.length());
+        if (number.isEmpty()) return DEFAULT_PORT;
+        try {
+            int port = Integer.parseInt(number);
+            return port >= 1 && port <= 65535 ? port : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Charset charset(String name) {
+        try {
+            return Charset.forName(name);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    // what is written becomes frames of one kind on the shared connection
+    private static final class Channel extends OutputStream {
+        private final DataOutputStream frames;
+        private final byte kind;
+
+        Channel(DataOutputStream frames, byte kind) {
+            this.frames = frames;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return;
+            synchronized (frames) {
+                frames.writeByte(kind);
+                frames.writeInt(len);
+                frames.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (frames) {
+                frames.flush();
+            }
+        }
+    }
+}
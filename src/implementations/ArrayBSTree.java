@@ -0,0 +1,631 @@
+package implementations;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntBiFunction;
+import utilities.BSTreeADT;
+import utilities.Iterator;
+
+/**
+ * A balanced (AVL) binary search tree that keeps its nodes in parallel arrays
+ * instead of node objects. A node is an index: its element, children, height
+ * and subtree size sit at that index in one array each, and children are
+ * linked by index. A node costs 17 bytes of arrays instead of a 32 byte object,
+ * a descent reads small int arrays rather than chasing node references across
+ * the heap, and the garbage collector traces a handful of arrays however large
+ * the tree grows.
+ * <p>
+ * It behaves exactly like a balanced {@link BSTree}, and the same adds give the
+ * same shape. Removed slots are reused by later adds. There are no node objects
+ * to hand out, so the nodes returned by {@link #getRoot()}, {@link #search},
+ * {@link #removeMin()} and {@link #removeMax()} are detached copies: they hold
+ * the element, height and size, but no children. The iterators walk the live
+ * tree; it must not be changed while one is in use.
+ */
+public class ArrayBSTree<E extends Comparable<? super E>> implements BSTreeADT<E>, Iterable<E> {
+    private static final long serialVersionUID = 1L;
+
+    // index 0 is the empty subtree: no element, height 0, size 0
+    private static final int NIL = 0;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private transient Object[] elements;
+    private transient int[] left;
+    private transient int[] right;
+    private transient int[] size;
+    // an AVL tree of 2^31 nodes is at most 45 high
+    private transient byte[] height;
+    private transient int root;
+    private transient int count;
+    // slots handed out so far, slot 0 included
+    private transient int used;
+    // removed slots, linked through left
+    private transient int free;
+    // reused by add and remove to walk back up without recursion
+    private transient int[] path;
+
+    public ArrayBSTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of elements to make room for up front
+     */
+    public ArrayBSTree(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("negative capacity " + capacity);
+        allocate(capacity + 1);
+    }
+
+    /**
+     * Builds a perfectly balanced tree from elements in strictly increasing
+     * order in linear time, laying the nodes out in element order.
+     *
+     * @param sorted supplies the elements in ascending order
+     * @param count  the number of elements to take from the iterator
+     * @return the new tree
+     * @throws IllegalArgumentException if the elements are not strictly
+     *                                  increasing or there are fewer than
+     *                                  count of them
+     */
+    public static <E extends Comparable<? super E>> ArrayBSTree<E> fromSorted(java.util.Iterator<? extends E> sorted,
+                                                                              int count) {
+        if (sorted == null) throw new NullPointerException();
+        if (count < 0) throw new IllegalArgumentException("negative count " + count);
+        ArrayBSTree<E> tree = new ArrayBSTree<>(count);
+        tree.root = tree.build(sorted, count, new Object[1]);
+        tree.count = count;
+        return tree;
+    }
+
+    private void allocate(int capacity) {
+        elements = new Object[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        size = new int[capacity];
+        height = new byte[capacity];
+        root = NIL;
+        count = 0;
+        used = 1;
+        free = NIL;
+    }
+
+    // builds the next n elements in order into slots handed out left to right;
+    // previous[0] holds the last element taken, to check the order
+    @SuppressWarnings("unchecked")
+    private int build(java.util.Iterator<? extends E> sorted, int n, Object[] previous) {
+        if (n == 0) return NIL;
+        int l = build(sorted, (n - 1) / 2, previous);
+        if (!sorted.hasNext()) throw new IllegalArgumentException("fewer elements than the given count");
+        E element = sorted.next();
+        if (element == null) throw new NullPointerException();
+        if (previous[0] != null && ((E) previous[0]).compareTo(element) >= 0) {
+            throw new IllegalArgumentException("elements are not in strictly increasing order");
+        }
+        previous[0] = element;
+        int node = alloc(element);
+        left[node] = l;
+        right[node] = build(sorted, n - 1 - (n - 1) / 2, previous);
+        update(node);
+        return node;
+    }
+
+    private int alloc(E element) {
+        int node;
+        if (free != NIL) {
+            node = free;
+            free = left[node];
+        } else {
+            if (used == elements.length) grow();
+            node = used++;
+        }
+        elements[node] = element;
+        left[node] = NIL;
+        right[node] = NIL;
+        size[node] = 1;
+        height[node] = 1;
+        return node;
+    }
+
+    private void release(int node) {
+        elements[node] = null;
+        left[node] = free;
+        right[node] = NIL;
+        free = node;
+    }
+
+    private void grow() {
+        int capacity = elements.length + (elements.length >> 1) + 1;
+        elements = Arrays.copyOf(elements, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        size = Arrays.copyOf(size, capacity);
+        height = Arrays.copyOf(height, capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private E element(int node) {
+        return (E) elements[node];
+    }
+
+    private BSTreeNode<E> detached(int node) {
+        BSTreeNode<E> copy = new BSTreeNode<>(element(node));
+        copy.setHeight(height[node]);
+        copy.setSize(size[node]);
+        return copy;
+    }
+
+    /**
+     * @return a detached copy of the root, without children
+     * @throws NullPointerException if the tree is empty
+     */
+    @Override
+    public BSTreeNode<E> getRoot() {
+        if (root == NIL) throw new NullPointerException();
+        return detached(root);
+    }
+
+    @Override
+    public int getHeight() {
+        return height[root];
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(elements, 0, used, null);
+        root = NIL;
+        count = 0;
+        used = 1;
+        free = NIL;
+    }
+
+    @Override
+    public boolean contains(E element) {
+        return find(element) != NIL;
+    }
+
+    /**
+     * @return a detached copy of the node holding element, without children,
+     *         or null if there is none
+     */
+    @Override
+    public BSTreeNode<E> search(E element) {
+        int node = find(element);
+        return node == NIL ? null : detached(node);
+    }
+
+    private int find(E element) {
+        if (element == null) throw new NullPointerException();
+        int node = root;
+        while (node != NIL) {
+            int cmp = element.compareTo(element(node));
+            if (cmp == 0) return node;
+            node = cmp < 0 ? left[node] : right[node];
+        }
+        return NIL;
+    }
+
+    @Override
+    public <K> E get(K key, ToIntBiFunction<? super K, ? super E> order) {
+        if (key == null || order == null) throw new NullPointerException();
+        int node = root;
+        while (node != NIL) {
+            int cmp = order.applyAsInt(key, element(node));
+            if (cmp == 0) return element(node);
+            node = cmp < 0 ? left[node] : right[node];
+        }
+        return null;
+    }
+
+    @Override
+    public boolean add(E element) {
+        if (element == null) throw new NullPointerException();
+        ToIntBiFunction<E, E> order = Comparable::compareTo;
+        // an equal element may be this very instance, so only a new node tells that it was added
+        int before = count;
+        insert(element, order, Function.identity());
+        return count > before;
+    }
+
+    @Override
+    public <K> E computeIfAbsent(K key, ToIntBiFunction<? super K, ? super E> order,
+                                 Function<? super K, ? extends E> factory) {
+        if (key == null || order == null || factory == null) throw new NullPointerException();
+        return insert(key, order, factory);
+    }
+
+    // the element equal to the key, or the one the factory makes for it, added where the key belongs
+    private <K> E insert(K key, ToIntBiFunction<? super K, ? super E> order, Function<? super K, ? extends E> factory) {
+        if (root == NIL) {
+            root = alloc(create(key, factory));
+            count++;
+            return element(root);
+        }
+        int[] path = pathBuffer(height[root]);
+        int depth = 0;
+        int node = root;
+        while (true) {
+            int cmp = order.applyAsInt(key, element(node));
+            if (cmp == 0) return element(node);
+            path[depth++] = node;
+            int next = cmp < 0 ? left[node] : right[node];
+            if (next == NIL) {
+                // alloc may grow the arrays, so they are read again after it
+                int leaf = alloc(create(key, factory));
+                if (cmp < 0) left[node] = leaf;
+                else right[node] = leaf;
+                count++;
+                rebalancePath(path, depth);
+                return element(leaf);
+            }
+            node = next;
+        }
+    }
+
+    private static <K, E> E create(K key, Function<? super K, ? extends E> factory) {
+        E element = factory.apply(key);
+        if (element == null) throw new NullPointerException("factory returned null");
+        return element;
+    }
+
+    private int[] pathBuffer(int capacity) {
+        if (path == null || path.length < capacity) {
+            path = new int[Math.max(capacity, 32)];
+        }
+        return path;
+    }
+
+    // walks back up from the deepest node on the path, rebalancing and relinking each subtree;
+    // once a subtree keeps both its root and its height only the sizes above it still change
+    private void rebalancePath(int[] path, int depth) {
+        for (int i = depth - 1; i >= 0; i--) {
+            int node = path[i];
+            int oldHeight = height[node];
+            int fixed = rebalance(node);
+            if (fixed == node && height[fixed] == oldHeight) {
+                while (i > 0) {
+                    updateSize(path[--i]);
+                }
+                return;
+            }
+            if (i == 0) root = fixed;
+            else if (left[path[i - 1]] == node) left[path[i - 1]] = fixed;
+            else right[path[i - 1]] = fixed;
+        }
+    }
+
+    private void updateSize(int node) {
+        size[node] = 1 + size[left[node]] + size[right[node]];
+    }
+
+    // recomputes height and subtree size from the children
+    private void update(int node) {
+        height[node] = (byte) (1 + Math.max(height[left[node]], height[right[node]]));
+        updateSize(node);
+    }
+
+    private int rotateLeft(int node) {
+        int pivot = right[node];
+        right[node] = left[pivot];
+        left[pivot] = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private int rotateRight(int node) {
+        int pivot = left[node];
+        left[node] = right[pivot];
+        right[pivot] = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    // restores the AVL invariant at node, assuming both subtrees already satisfy it
+    private int rebalance(int node) {
+        update(node);
+        int balance = height[left[node]] - height[right[node]];
+        if (balance > 1) {
+            if (height[left[left[node]]] < height[right[left[node]]]) {
+                left[node] = rotateLeft(left[node]);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height[right[right[node]]] < height[left[right[node]]]) {
+                right[node] = rotateRight(right[node]);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    @Override
+    public int rank(E element) {
+        if (element == null) throw new NullPointerException();
+        return countBelow(element, false);
+    }
+
+    @Override
+    public E select(int index) {
+        if (index < 0 || index >= count) throw new IndexOutOfBoundsException(String.valueOf(index));
+        int node = root;
+        while (true) {
+            int before = size[left[node]];
+            if (index == before) return element(node);
+            if (index < before) {
+                node = left[node];
+            } else {
+                index -= before + 1;
+                node = right[node];
+            }
+        }
+    }
+
+    @Override
+    public int countRange(E lo, E hi) {
+        if (lo == null || hi == null) throw new NullPointerException();
+        if (lo.compareTo(hi) > 0) return 0;
+        return countBelow(hi, true) - countBelow(lo, false);
+    }
+
+    // the number of elements less than element, or not greater than it if inclusive
+    private int countBelow(E element, boolean inclusive) {
+        int below = 0;
+        int node = root;
+        while (node != NIL) {
+            int cmp = element.compareTo(element(node));
+            if (cmp < 0 || (cmp == 0 && !inclusive)) {
+                node = left[node];
+            } else {
+                below += size[left[node]] + 1;
+                if (cmp == 0) return below;
+                node = right[node];
+            }
+        }
+        return below;
+    }
+
+    @Override
+    public E ceiling(E element) {
+        return nearest(element, true, true);
+    }
+
+    @Override
+    public E floor(E element) {
+        return nearest(element, false, true);
+    }
+
+    @Override
+    public E higher(E element) {
+        return nearest(element, true, false);
+    }
+
+    @Override
+    public E lower(E element) {
+        return nearest(element, false, false);
+    }
+
+    // the closest element above (or below) element, or element itself if inclusive and present
+    private E nearest(E element, boolean above, boolean inclusive) {
+        if (element == null) throw new NullPointerException();
+        E best = null;
+        int node = root;
+        while (node != NIL) {
+            int cmp = element.compareTo(element(node));
+            if (cmp == 0 && inclusive) return element(node);
+            if (above ? cmp < 0 : cmp > 0) {
+                best = element(node);
+                node = above ? left[node] : right[node];
+            } else {
+                node = above ? right[node] : left[node];
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public BSTreeNode<E> removeMin() {
+        return removeEnd(true);
+    }
+
+    @Override
+    public BSTreeNode<E> removeMax() {
+        return removeEnd(false);
+    }
+
+    // unlinks the leftmost (or rightmost) node, whose slot is then free for reuse
+    private BSTreeNode<E> removeEnd(boolean min) {
+        if (root == NIL) return null;
+        int[] path = pathBuffer(height[root]);
+        int depth = 0;
+        int node = root;
+        for (int next = min ? left[node] : right[node]; next != NIL; next = min ? left[node] : right[node]) {
+            path[depth++] = node;
+            node = next;
+        }
+        int child = min ? right[node] : left[node];
+        if (depth == 0) root = child;
+        else if (min) left[path[depth - 1]] = child;
+        else right[path[depth - 1]] = child;
+        BSTreeNode<E> removed = new BSTreeNode<>(element(node));
+        release(node);
+        count--;
+        rebalancePath(path, depth);
+        return removed;
+    }
+
+    @Override
+    public Iterator<E> inorderIterator() {
+        return new InorderWalk(root);
+    }
+
+    @Override
+    public Iterator<E> preorderIterator() {
+        return new PreorderWalk();
+    }
+
+    @Override
+    public Iterator<E> postorderIterator() {
+        return new PostorderWalk();
+    }
+
+    @Override
+    public Iterator<E> rangeIterator(E from, E to) {
+        return new RangeWalk(e -> from != null && e.compareTo(from) < 0, e -> to != null && e.compareTo(to) >= 0);
+    }
+
+    /**
+     * Iterates in order over the elements that start with a prefix, as
+     * {@link BSTree#prefixIterator(Object, ToIntBiFunction)} does.
+     */
+    @Override
+    public <K> Iterator<E> prefixIterator(K prefix, ToIntBiFunction<? super K, ? super E> prefixOrder) {
+        if (prefix == null || prefixOrder == null) throw new NullPointerException();
+        return new RangeWalk(e -> prefixOrder.applyAsInt(prefix, e) > 0, e -> prefixOrder.applyAsInt(prefix, e) < 0);
+    }
+
+    @Override
+    public java.util.Iterator<E> iterator() {
+        return new InorderWalk(root);
+    }
+
+    // written as a count and the elements in order, and rebuilt balanced on read
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(count);
+        for (Iterator<E> it = inorderIterator(); it.hasNext(); ) {
+            out.writeObject(it.next());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int n = in.readInt();
+        if (n < 0) throw new InvalidObjectException("negative tree size " + n);
+        List<E> sorted = new ArrayList<>(n);
+        try {
+            for (int i = 0; i < n; i++) {
+                sorted.add((E) in.readObject());
+            }
+            allocate(n + 1);
+            root = build(sorted.iterator(), n, new Object[1]);
+        } catch (IllegalArgumentException | NullPointerException | ClassCastException e) {
+            throw new InvalidObjectException(e.getMessage());
+        }
+        count = n;
+    }
+
+    // the walk state is a stack of node indices holding at most one root-to-leaf path
+    private abstract class Walk implements Iterator<E>, java.util.Iterator<E> {
+        protected final int[] stack = new int[height[root] + 1];
+        protected int top;
+
+        @Override
+        public boolean hasNext() {
+            return top > 0;
+        }
+    }
+
+    private class InorderWalk extends Walk {
+        InorderWalk(int start) {
+            pushLeft(start);
+        }
+
+        private void pushLeft(int node) {
+            while (node != NIL) {
+                stack[top++] = node;
+                node = left[node];
+            }
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int node = stack[--top];
+            pushLeft(right[node]);
+            return element(node);
+        }
+    }
+
+    // starts at the first element not below the range and stops at the first one above it
+    private class RangeWalk extends InorderWalk {
+        private final Predicate<? super E> above;
+
+        RangeWalk(Predicate<? super E> below, Predicate<? super E> above) {
+            super(NIL);
+            this.above = above;
+            int node = root;
+            while (node != NIL) {
+                if (below.test(element(node))) {
+                    node = right[node];
+                } else {
+                    stack[top++] = node;
+                    node = left[node];
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return top > 0 && !above.test(element(stack[top - 1]));
+        }
+    }
+
+    private class PreorderWalk extends Walk {
+        PreorderWalk() {
+            if (root != NIL) stack[top++] = root;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int node = stack[--top];
+            // the right child takes the slot just freed, so the stack never outgrows the height
+            if (right[node] != NIL) stack[top++] = right[node];
+            if (left[node] != NIL) stack[top++] = left[node];
+            return element(node);
+        }
+    }
+
+    private class PostorderWalk extends Walk {
+        PostorderWalk() {
+            descend(root);
+        }
+
+        // pushes the path to the first node in post-order below node
+        private void descend(int node) {
+            while (node != NIL) {
+                stack[top++] = node;
+                node = left[node] != NIL ? left[node] : right[node];
+            }
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int node = stack[--top];
+            if (top > 0 && left[stack[top - 1]] == node) descend(right[stack[top - 1]]);
+            return element(node);
+        }
+    }
+}
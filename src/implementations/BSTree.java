@@ -1,26 +1,178 @@
 package implementations;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntBiFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import utilities.BSTreeADT;
 import utilities.Iterator;
 
-public class BSTree<E extends Comparable<? super E>> implements BSTreeADT<E>, Serializable {  // ADDED Serializable
+public class BSTree<E extends Comparable<? super E>> implements BSTreeADT<E>, Iterable<E>, Serializable {  // ADDED Serializable
     private static final long serialVersionUID = 1L;                                          // ADDED
 
+    // root is kept in the stream format so repositories written before writeObject existed still load;
+    // new streams leave it null and write the nodes after the fields (see writeObject)
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("root", BSTreeNode.class),
+        new ObjectStreamField("size", int.class),
+        new ObjectStreamField("balanced", boolean.class)
+    };
+
+    private static final int HAS_LEFT = 1;
+    private static final int HAS_RIGHT = 2;
+
     private BSTreeNode<E> root;
     private int size;
+    // AVL mode: node heights are maintained and every insert/remove rebalances
+    private boolean balanced;
+    // reused by the balanced insert/remove paths to walk back up without recursion; an Object[]
+    // because a generic array cannot be created, read back through node(path, i)
+    private transient Object[] path;
 
     public BSTree() {
+        this(false);
+    }
+
+    public BSTree(boolean balanced) {
         root = null;
         size = 0;
+        this.balanced = balanced;
     }
 
     public BSTree(E element) {
         if (element == null) throw new NullPointerException();
         root = new BSTreeNode<>(element);
         size = 1;
+        balanced = false;
+    }
+
+    public boolean isBalanced() {
+        return balanced;
+    }
+
+    /**
+     * Builds a perfectly balanced tree from elements in strictly increasing order
+     * in linear time. The result is in balanced (AVL) mode.
+     *
+     * @param sorted supplies the elements in ascending order
+     * @param count  the number of elements to take from the iterator
+     * @return the new tree
+     * @throws IllegalArgumentException if the elements are not strictly increasing
+     *                                  or there are fewer than count of them
+     */
+    public static <E extends Comparable<? super E>> BSTree<E> fromSorted(java.util.Iterator<? extends E> sorted, int count) {
+        if (sorted == null) throw new NullPointerException();
+        if (count < 0) throw new IllegalArgumentException("negative count " + count);
+        BSTree<E> tree = new BSTree<>(true);
+        tree.root = new SortedBuilder<E>(sorted).build(count);
+        tree.size = count;
+        return tree;
+    }
+
+    /**
+     * Builds a perfectly balanced tree from an array in strictly increasing
+     * order in linear time. The result is in balanced (AVL) mode.
+     *
+     * @param sorted the elements in ascending order
+     * @return the new tree
+     * @throws IllegalArgumentException if the elements are not strictly increasing
+     */
+    public static <E extends Comparable<? super E>> BSTree<E> fromSorted(E[] sorted) {
+        if (sorted == null) throw new NullPointerException();
+        return fromSorted(Arrays.asList(sorted).iterator(), sorted.length);
+    }
+
+    /**
+     * Rebuilds the tree perfectly balanced in linear time, keeping its nodes,
+     * and switches it to balanced (AVL) mode so it stays balanced afterwards.
+     * Useful for a tree that was built unbalanced, such as one read from an
+     * old repository file.
+     */
+    public void rebalance() {
+        Object[] nodes = new Object[size];
+        int n = 0;
+        ArrayDeque<BSTreeNode<E>> stack = new ArrayDeque<>();
+        for (BSTreeNode<E> node = root; node != null || !stack.isEmpty(); node = node.getRight()) {
+            for (; node != null; node = node.getLeft()) {
+                stack.push(node);
+            }
+            node = stack.pop();
+            nodes[n++] = node;
+        }
+        root = link(nodes, 0, n);
+        balanced = true;
+    }
+
+    // relinks nodes[from, to) into the same shape fromSorted builds, the middle one on top
+    private static <E extends Comparable<? super E>> BSTreeNode<E> link(Object[] nodes, int from, int to) {
+        if (from == to) return null;
+        int mid = from + (to - from - 1) / 2;
+        BSTreeNode<E> node = node(nodes, mid);
+        node.setLeft(link(nodes, from, mid));
+        node.setRight(link(nodes, mid + 1, to));
+        update(node);
+        return node;
+    }
+
+    // a read-only tree over nodes that belong to someone else, such as a PersistentBSTree
+    // snapshot; only queries and iterators may be used on it
+    static <E extends Comparable<? super E>> BSTree<E> view(BSTreeNode<E> root) {
+        BSTree<E> tree = new BSTree<>(true);
+        tree.root = root;
+        tree.size = size(root);
+        return tree;
+    }
+
+    /**
+     * Merges two trees by walking both in order, in time linear in their combined
+     * size. Elements found in both trees are combined into one, the element from
+     * the first tree being passed first. The result is a new perfectly balanced
+     * tree sharing the elements of the inputs, which should not be used afterwards.
+     *
+     * @param first    one tree to merge
+     * @param second   the other tree to merge
+     * @param combiner merges two equal elements into the one that is kept
+     * @return the merged tree
+     */
+    public static <E extends Comparable<? super E>> BSTree<E> merge(BSTree<E> first, BSTree<E> second,
+                                                                     BinaryOperator<E> combiner) {
+        if (first == null || second == null || combiner == null) throw new NullPointerException();
+        ArrayList<E> merged = new ArrayList<>(first.size + second.size);
+        InorderIterator<E> a = new InorderIterator<>(first.root);
+        InorderIterator<E> b = new InorderIterator<>(second.root);
+        E x = a.hasNext() ? a.next() : null;
+        E y = b.hasNext() ? b.next() : null;
+        while (x != null && y != null) {
+            int cmp = x.compareTo(y);
+            if (cmp < 0) {
+                merged.add(x);
+                x = a.hasNext() ? a.next() : null;
+            } else if (cmp > 0) {
+                merged.add(y);
+                y = b.hasNext() ? b.next() : null;
+            } else {
+                merged.add(combiner.apply(x, y));
+                x = a.hasNext() ? a.next() : null;
+                y = b.hasNext() ? b.next() : null;
+            }
+        }
+        for (; x != null; x = a.hasNext() ? a.next() : null) merged.add(x);
+        for (; y != null; y = b.hasNext() ? b.next() : null) merged.add(y);
+        return fromSorted(merged.iterator(), merged.size());
     }
 
     @Override
@@ -31,41 +183,226 @@ public class BSTree<E extends Comparable<? super E>> implements BSTreeADT<E>, Se
             size++;
             return true;
         }
-        return addRecursive(root, element);
+        // an unbalanced tree keeps no heights to size a path buffer by, so a hit is one read-only
+        // descent, and only a real insert walks down again, through nodes still in cache, to count it
+        if (!balanced) {
+            if (get(element, Comparable::compareTo) != null) return false;
+            insertUnbalanced(element, Comparable::compareTo, element);
+            return true;
+        }
+
+        Object[] path = pathBuffer(height(root));
+        int depth = 0;
+        BSTreeNode<E> node = root;
+        while (true) {
+            int cmp = element.compareTo(node.getElement());
+            if (cmp == 0) {
+                Arrays.fill(path, 0, depth, null);
+                return false;
+            }
+            path[depth++] = node;
+            BSTreeNode<E> next = cmp < 0 ? node.getLeft() : node.getRight();
+            if (next == null) {
+                if (cmp < 0) node.setLeft(new BSTreeNode<>(element));
+                else node.setRight(new BSTreeNode<>(element));
+                break;
+            }
+            node = next;
+        }
+        size++;
+        rebalancePath(path, depth);
+        return true;
     }
 
-    private boolean addRecursive(BSTreeNode<E> node, E element) {
-        int cmp = element.compareTo(node.getElement());
-        if (cmp < 0) {
-            if (node.getLeft() == null) {
-                node.setLeft(new BSTreeNode<>(element));
-                size++;
-                return true;
+    // a second walk down to a key known to be missing, counting the new node in each subtree it passes
+    private <K> void insertUnbalanced(K key, ToIntBiFunction<? super K, ? super E> order, E element) {
+        BSTreeNode<E> node = root;
+        while (true) {
+            node.setSize(node.getSize() + 1);
+            BSTreeNode<E> next;
+            if (order.applyAsInt(key, node.getElement()) < 0) {
+                next = node.getLeft();
+                if (next == null) {
+                    node.setLeft(new BSTreeNode<>(element));
+                    break;
+                }
+            } else {
+                next = node.getRight();
+                if (next == null) {
+                    node.setRight(new BSTreeNode<>(element));
+                    break;
+                }
             }
-            return addRecursive(node.getLeft(), element);
-        } else if (cmp > 0) {
-            if (node.getRight() == null) {
-                node.setRight(new BSTreeNode<>(element));
-                size++;
-                return true;
+            node = next;
+        }
+        size++;
+    }
+
+    private Object[] pathBuffer(int capacity) {
+        if (path == null || path.length < capacity) {
+            path = new Object[Math.max(capacity, 32)];
+        }
+        return path;
+    }
+
+    // the node at nodes[i], for the node arrays kept as Object[]
+    @SuppressWarnings("unchecked")
+    private static <E extends Comparable<? super E>> BSTreeNode<E> node(Object[] nodes, int i) {
+        return (BSTreeNode<E>) nodes[i];
+    }
+
+    // walks back up from the deepest node on the path, rebalancing and relinking each subtree;
+    // once a subtree keeps both its root and its height only the sizes above it still change
+    private void rebalancePath(Object[] path, int depth) {
+        for (int i = depth - 1; i >= 0; i--) {
+            BSTreeNode<E> node = node(path, i);
+            path[i] = null;
+            int oldHeight = node.getHeight();
+            BSTreeNode<E> fixed = rebalance(node);
+            if (fixed == node && fixed.getHeight() == oldHeight) {
+                while (i > 0) {
+                    BSTreeNode<E> above = node(path, --i);
+                    path[i] = null;
+                    updateSize(above);
+                }
+                return;
+            }
+            if (i == 0) {
+                root = fixed;
+                continue;
+            }
+            BSTreeNode<E> parent = node(path, i - 1);
+            if (parent.getLeft() == node) parent.setLeft(fixed);
+            else parent.setRight(fixed);
+        }
+    }
+
+    private static int height(BSTreeNode<?> node) {
+        return node == null ? 0 : node.getHeight();
+    }
+
+    private static int size(BSTreeNode<?> node) {
+        return node == null ? 0 : node.getSize();
+    }
+
+    private static void updateSize(BSTreeNode<?> node) {
+        node.setSize(1 + size(node.getLeft()) + size(node.getRight()));
+    }
+
+    // recomputes height and subtree size from the children
+    private static void update(BSTreeNode<?> node) {
+        node.setHeight(1 + Math.max(height(node.getLeft()), height(node.getRight())));
+        updateSize(node);
+    }
+
+    private BSTreeNode<E> rotateLeft(BSTreeNode<E> node) {
+        BSTreeNode<E> pivot = node.getRight();
+        node.setRight(pivot.getLeft());
+        pivot.setLeft(node);
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private BSTreeNode<E> rotateRight(BSTreeNode<E> node) {
+        BSTreeNode<E> pivot = node.getLeft();
+        node.setLeft(pivot.getRight());
+        pivot.setRight(node);
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    // restores the AVL invariant at node, assuming both subtrees already satisfy it
+    private BSTreeNode<E> rebalance(BSTreeNode<E> node) {
+        update(node);
+        int balance = height(node.getLeft()) - height(node.getRight());
+        if (balance > 1) {
+            if (height(node.getLeft().getLeft()) < height(node.getLeft().getRight())) {
+                node.setLeft(rotateLeft(node.getLeft()));
             }
-            return addRecursive(node.getRight(), element);
+            return rotateRight(node);
         }
-        return false;
+        if (balance < -1) {
+            if (height(node.getRight().getRight()) < height(node.getRight().getLeft())) {
+                node.setRight(rotateRight(node.getRight()));
+            }
+            return rotateLeft(node);
+        }
+        return node;
     }
 
     @Override
     public BSTreeNode<E> search(E element) {
         if (element == null) throw new NullPointerException();
-        return searchRecursive(root, element);
+        BSTreeNode<E> node = root;
+        while (node != null) {
+            int cmp = element.compareTo(node.getElement());
+            if (cmp == 0) return node;
+            node = cmp < 0 ? node.getLeft() : node.getRight();
+        }
+        return null;
     }
 
-    private BSTreeNode<E> searchRecursive(BSTreeNode<E> node, E element) {
-        if (node == null) return null;
-        int cmp = element.compareTo(node.getElement());
-        if (cmp == 0) return node;
-        else if (cmp < 0) return searchRecursive(node.getLeft(), element);
-        else return searchRecursive(node.getRight(), element);
+    @Override
+    public <K> E get(K key, ToIntBiFunction<? super K, ? super E> order) {
+        if (key == null || order == null) throw new NullPointerException();
+        BSTreeNode<E> node = root;
+        while (node != null) {
+            int cmp = order.applyAsInt(key, node.getElement());
+            if (cmp == 0) return node.getElement();
+            node = cmp < 0 ? node.getLeft() : node.getRight();
+        }
+        return null;
+    }
+
+    @Override
+    public <K> E computeIfAbsent(K key, ToIntBiFunction<? super K, ? super E> order,
+                                 Function<? super K, ? extends E> factory) {
+        if (key == null || order == null || factory == null) throw new NullPointerException();
+        if (root == null) {
+            E element = create(key, factory);
+            root = new BSTreeNode<>(element);
+            size++;
+            return element;
+        }
+
+        // as in add, a hit costs one descent that changes nothing
+        if (!balanced) {
+            E found = get(key, order);
+            if (found != null) return found;
+            E element = create(key, factory);
+            insertUnbalanced(key, order, element);
+            return element;
+        }
+
+        Object[] path = pathBuffer(height(root));
+        int depth = 0;
+        BSTreeNode<E> node = root;
+        while (true) {
+            int cmp = order.applyAsInt(key, node.getElement());
+            if (cmp == 0) {
+                Arrays.fill(path, 0, depth, null);
+                return node.getElement();
+            }
+            path[depth++] = node;
+            BSTreeNode<E> next = cmp < 0 ? node.getLeft() : node.getRight();
+            if (next == null) {
+                E element = create(key, factory);
+                if (cmp < 0) node.setLeft(new BSTreeNode<>(element));
+                else node.setRight(new BSTreeNode<>(element));
+                size++;
+                rebalancePath(path, depth);
+                return element;
+            }
+            node = next;
+        }
+    }
+
+    private static <K, E> E create(K key, Function<? super K, ? extends E> factory) {
+        E element = factory.apply(key);
+        if (element == null) throw new NullPointerException("factory returned null");
+        return element;
     }
 
     @Override
@@ -92,12 +429,20 @@ public class BSTree<E extends Comparable<? super E>> implements BSTreeADT<E>, Se
 
     @Override
     public int getHeight() {
-        return heightRecursive(root);
-    }
-
-    private int heightRecursive(BSTreeNode<E> node) {
-        if (node == null) return 0;
-        return 1 + Math.max(heightRecursive(node.getLeft()), heightRecursive(node.getRight()));
+        if (balanced || root == null) return height(root);
+        // level-order walk, counting one level per pass over the queue
+        ArrayDeque<BSTreeNode<E>> level = new ArrayDeque<>();
+        level.add(root);
+        int height = 0;
+        while (!level.isEmpty()) {
+            height++;
+            for (int n = level.size(); n > 0; n--) {
+                BSTreeNode<E> node = level.poll();
+                if (node.getLeft() != null) level.add(node.getLeft());
+                if (node.getRight() != null) level.add(node.getRight());
+            }
+        }
+        return height;
     }
 
     @Override
@@ -107,105 +452,411 @@ public class BSTree<E extends Comparable<? super E>> implements BSTreeADT<E>, Se
     }
 
     @Override
-    public BSTreeNode<E> removeMin() {
-        if (root == null) return null;
-        BSTreeNode<E> minNode = getMin(root);
-        root = removeMinRecursive(root);
-        size--;
-        return minNode;
+    public int rank(E element) {
+        if (element == null) throw new NullPointerException();
+        return countBelow(element, false);
     }
 
-    private BSTreeNode<E> getMin(BSTreeNode<E> node) {
-        while (node.getLeft() != null) node = node.getLeft();
-        return node;
+    @Override
+    public E select(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+        BSTreeNode<E> node = root;
+        while (true) {
+            int before = size(node.getLeft());
+            if (index == before) return node.getElement();
+            if (index < before) {
+                node = node.getLeft();
+            } else {
+                index -= before + 1;
+                node = node.getRight();
+            }
+        }
     }
 
-    private BSTreeNode<E> removeMinRecursive(BSTreeNode<E> node) {
-        if (node.getLeft() == null) return node.getRight();
-        node.setLeft(removeMinRecursive(node.getLeft()));
-        return node;
+    @Override
+    public int countRange(E lo, E hi) {
+        if (lo == null || hi == null) throw new NullPointerException();
+        if (lo.compareTo(hi) > 0) return 0;
+        return countBelow(hi, true) - countBelow(lo, false);
+    }
+
+    // the number of elements less than element, or not greater than it if inclusive
+    private int countBelow(E element, boolean inclusive) {
+        int count = 0;
+        BSTreeNode<E> node = root;
+        while (node != null) {
+            int cmp = element.compareTo(node.getElement());
+            if (cmp < 0 || (cmp == 0 && !inclusive)) {
+                node = node.getLeft();
+            } else {
+                count += size(node.getLeft()) + 1;
+                if (cmp == 0) return count;
+                node = node.getRight();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public E ceiling(E element) {
+        return nearest(element, true, true);
+    }
+
+    @Override
+    public E floor(E element) {
+        return nearest(element, false, true);
+    }
+
+    @Override
+    public E higher(E element) {
+        return nearest(element, true, false);
+    }
+
+    @Override
+    public E lower(E element) {
+        return nearest(element, false, false);
+    }
+
+    // the closest element above (or below) element, or element itself if inclusive and present
+    private E nearest(E element, boolean above, boolean inclusive) {
+        if (element == null) throw new NullPointerException();
+        E best = null;
+        BSTreeNode<E> node = root;
+        while (node != null) {
+            int cmp = element.compareTo(node.getElement());
+            if (cmp == 0 && inclusive) return node.getElement();
+            if (above ? cmp < 0 : cmp > 0) {
+                best = node.getElement();
+                node = above ? node.getLeft() : node.getRight();
+            } else {
+                node = above ? node.getRight() : node.getLeft();
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public BSTreeNode<E> removeMin() {
+        if (root == null) return null;
+        Object[] path = balanced ? pathBuffer(height(root)) : null;
+        int depth = 0;
+        BSTreeNode<E> parent = null;
+        BSTreeNode<E> minNode = root;
+        while (minNode.getLeft() != null) {
+            if (path != null) path[depth++] = minNode;
+            else minNode.setSize(minNode.getSize() - 1);
+            parent = minNode;
+            minNode = minNode.getLeft();
+        }
+        if (parent == null) root = minNode.getRight();
+        else parent.setLeft(minNode.getRight());
+        size--;
+        if (path != null) rebalancePath(path, depth);
+        return minNode;
     }
 
     @Override
     public BSTreeNode<E> removeMax() {
         if (root == null) return null;
-        BSTreeNode<E> maxNode = getMax(root);
-        root = removeMaxRecursive(root);
+        Object[] path = balanced ? pathBuffer(height(root)) : null;
+        int depth = 0;
+        BSTreeNode<E> parent = null;
+        BSTreeNode<E> maxNode = root;
+        while (maxNode.getRight() != null) {
+            if (path != null) path[depth++] = maxNode;
+            else maxNode.setSize(maxNode.getSize() - 1);
+            parent = maxNode;
+            maxNode = maxNode.getRight();
+        }
+        if (parent == null) root = maxNode.getLeft();
+        else parent.setRight(maxNode.getLeft());
         size--;
+        if (path != null) rebalancePath(path, depth);
         return maxNode;
     }
 
-    private BSTreeNode<E> getMax(BSTreeNode<E> node) {
-        while (node.getRight() != null) node = node.getRight();
-        return node;
+    // the iterators walk the live tree lazily; the tree must not be modified while one is in use
+    @Override
+    public Iterator<E> inorderIterator() {
+        return new InorderIterator<>(root);
     }
 
-    private BSTreeNode<E> removeMaxRecursive(BSTreeNode<E> node) {
-        if (node.getRight() == null) return node.getLeft();
-        node.setRight(removeMaxRecursive(node.getRight()));
-        return node;
+    @Override
+    public Iterator<E> preorderIterator() {
+        return new PreorderIterator<>(root);
     }
 
     @Override
-    public Iterator<E> inorderIterator() {
-        return new TreeIterator<>(root, "inorder");
+    public Iterator<E> postorderIterator() {
+        return new PostorderIterator<>(root);
     }
 
     @Override
-    public Iterator<E> preorderIterator() {
-        return new TreeIterator<>(root, "preorder");
+    public Iterator<E> rangeIterator(E from, E to) {
+        return new RangeIterator<>(root,
+                e -> from != null && e.compareTo(from) < 0,
+                e -> to != null && e.compareTo(to) >= 0);
+    }
+
+    /**
+     * Iterates in order over the elements from one key up to, but not including,
+     * another, compared with a key order as in {@link #get(Object, ToIntBiFunction)}.
+     * Only the path to the first element and the elements returned are visited.
+     *
+     * @param from  the smallest key to include, or null to start at the smallest
+     *              element
+     * @param to    the key to stop before, or null to run to the largest element
+     * @param order compares a key with an element
+     * @return an iterator over the elements in the range
+     */
+    public <K> Iterator<E> rangeIterator(K from, K to, ToIntBiFunction<? super K, ? super E> order) {
+        if (order == null) throw new NullPointerException();
+        return new RangeIterator<>(root,
+                e -> from != null && order.applyAsInt(from, e) > 0,
+                e -> to != null && order.applyAsInt(to, e) <= 0);
     }
 
+    /**
+     * Iterates in order over the elements that start with a prefix. The prefix
+     * order returns 0 for an element that starts with the key, and otherwise
+     * the sign of the key compared with the element, so the matching elements
+     * form one run in the tree. Costs O(log n + k) for k matches.
+     *
+     * @param prefix      the prefix key
+     * @param prefixOrder compares the prefix with an element as described above
+     * @return an iterator over the elements that match the prefix
+     */
     @Override
-    public Iterator<E> postorderIterator() {
-        return new TreeIterator<>(root, "postorder");
+    public <K> Iterator<E> prefixIterator(K prefix, ToIntBiFunction<? super K, ? super E> prefixOrder) {
+        if (prefix == null || prefixOrder == null) throw new NullPointerException();
+        return new RangeIterator<>(root,
+                e -> prefixOrder.applyAsInt(prefix, e) > 0,
+                e -> prefixOrder.applyAsInt(prefix, e) < 0);
+    }
+
+    @Override
+    public java.util.Iterator<E> iterator() {
+        return new InorderIterator<>(root);
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(new InorderIterator<>(root), size,
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL);
     }
 
-    private static class TreeIterator<E extends Comparable<? super E>> implements Iterator<E> {
-        private ArrayList<E> elements;
-        private int index;
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
 
-        public TreeIterator(BSTreeNode<E> root, String order) {
-            elements = new ArrayList<>();
-            if (order.equals("inorder")) inorder(root);
-            else if (order.equals("preorder")) preorder(root);
-            else if (order.equals("postorder")) postorder(root);
-            index = 0;
+    // nodes are written in pre-order, each as a child-flags byte followed by its element,
+    // so neither writing nor reading recurses once per level of the tree
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("root", null);
+        fields.put("size", size);
+        fields.put("balanced", balanced);
+        out.writeFields();
+
+        ArrayDeque<BSTreeNode<E>> stack = new ArrayDeque<>();
+        if (root != null) stack.push(root);
+        while (!stack.isEmpty()) {
+            BSTreeNode<E> node = stack.pop();
+            int flags = 0;
+            if (node.getLeft() != null) flags |= HAS_LEFT;
+            if (node.getRight() != null) flags |= HAS_RIGHT;
+            out.writeByte(flags);
+            out.writeObject(node.getElement());
+            if (node.getRight() != null) stack.push(node.getRight());
+            if (node.getLeft() != null) stack.push(node.getLeft());
         }
+    }
 
-        private void inorder(BSTreeNode<E> node) {
-            if (node != null) {
-                inorder(node.getLeft());
-                elements.add(node.getElement());
-                inorder(node.getRight());
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        root = (BSTreeNode<E>) fields.get("root", null);
+        size = fields.get("size", 0);
+        balanced = fields.get("balanced", false);
+        if (root != null) {
+            // old format: its nodes were saved without subtree sizes
+            recount();
+            return;
+        }
+        if (size == 0) return;
+        if (size < 0) throw new InvalidObjectException("negative tree size " + size);
+
+        // open child slots, the left slot of a node on top so it is filled first
+        Object[] order = new Object[size];
+        Object[] slotParent = new Object[size + 1];
+        boolean[] slotLeft = new boolean[size + 1];
+        int open = 0;
+        for (int i = 0; i < size; i++) {
+            int flags = in.readByte();
+            BSTreeNode<E> node = new BSTreeNode<>((E) in.readObject());
+            order[i] = node;
+            if (i == 0) {
+                root = node;
+            } else {
+                if (open == 0) throw new InvalidObjectException("tree stream has more nodes than child links");
+                open--;
+                BSTreeNode<E> parent = node(slotParent, open);
+                if (slotLeft[open]) parent.setLeft(node);
+                else parent.setRight(node);
             }
+            if ((flags & HAS_RIGHT) != 0) {
+                slotParent[open] = node;
+                slotLeft[open++] = false;
+            }
+            if ((flags & HAS_LEFT) != 0) {
+                slotParent[open] = node;
+                slotLeft[open++] = true;
+            }
+        }
+        if (open != 0) throw new InvalidObjectException("tree stream ended with " + open + " missing nodes");
+
+        // children always follow their parent in pre-order, so a backwards pass sees them first
+        for (int i = size - 1; i >= 0; i--) {
+            update(node(order, i));
+        }
+    }
+
+    // recomputes every height and subtree size, children before parents
+    private void recount() {
+        ArrayList<BSTreeNode<E>> order = new ArrayList<>();
+        ArrayDeque<BSTreeNode<E>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            BSTreeNode<E> node = stack.pop();
+            order.add(node);
+            if (node.getRight() != null) stack.push(node.getRight());
+            if (node.getLeft() != null) stack.push(node.getLeft());
+        }
+        for (int i = order.size() - 1; i >= 0; i--) {
+            update(order.get(i));
+        }
+    }
+
+    // builds the subtree for the next n elements in order: left half, root, right half.
+    // Recursion only goes log2(n) deep since each call halves n.
+    private static class SortedBuilder<E extends Comparable<? super E>> {
+        private final java.util.Iterator<? extends E> sorted;
+        private E previous;
+
+        SortedBuilder(java.util.Iterator<? extends E> sorted) {
+            this.sorted = sorted;
         }
 
-        private void preorder(BSTreeNode<E> node) {
-            if (node != null) {
-                elements.add(node.getElement());
-                preorder(node.getLeft());
-                preorder(node.getRight());
+        BSTreeNode<E> build(int n) {
+            if (n == 0) return null;
+            BSTreeNode<E> left = build((n - 1) / 2);
+            if (!sorted.hasNext()) throw new IllegalArgumentException("fewer elements than the given count");
+            E element = sorted.next();
+            if (element == null) throw new NullPointerException();
+            if (previous != null && previous.compareTo(element) >= 0) {
+                throw new IllegalArgumentException("elements are not in strictly increasing order");
             }
+            previous = element;
+            BSTreeNode<E> node = new BSTreeNode<>(element);
+            node.setLeft(left);
+            node.setRight(build(n - 1 - (n - 1) / 2));
+            update(node);
+            return node;
+        }
+    }
+
+    // the walk state is an explicit stack holding at most one root-to-leaf path,
+    // so elements are produced on demand instead of being copied up front
+    private abstract static class TreeIterator<E extends Comparable<? super E>> implements Iterator<E>, java.util.Iterator<E> {
+        protected final ArrayDeque<BSTreeNode<E>> stack = new ArrayDeque<>();
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+    }
+
+    private static class InorderIterator<E extends Comparable<? super E>> extends TreeIterator<E> {
+        InorderIterator(BSTreeNode<E> root) {
+            pushLeft(root);
         }
 
-        private void postorder(BSTreeNode<E> node) {
-            if (node != null) {
-                postorder(node.getLeft());
-                postorder(node.getRight());
-                elements.add(node.getElement());
+        private void pushLeft(BSTreeNode<E> node) {
+            while (node != null) {
+                stack.push(node);
+                node = node.getLeft();
+            }
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            BSTreeNode<E> node = stack.pop();
+            pushLeft(node.getRight());
+            return node.getElement();
+        }
+    }
+
+    // an in-order walk that descends straight to the first element not below the range
+    // and ends at the first element above it
+    private static class RangeIterator<E extends Comparable<? super E>> extends InorderIterator<E> {
+        private final Predicate<? super E> above;
+
+        RangeIterator(BSTreeNode<E> root, Predicate<? super E> below, Predicate<? super E> above) {
+            super(null);
+            this.above = above;
+            BSTreeNode<E> node = root;
+            while (node != null) {
+                if (below.test(node.getElement())) {
+                    node = node.getRight();
+                } else {
+                    stack.push(node);
+                    node = node.getLeft();
+                }
             }
         }
 
         @Override
         public boolean hasNext() {
-            return index < elements.size();
+            return !stack.isEmpty() && !above.test(stack.peek().getElement());
+        }
+    }
+
+    private static class PreorderIterator<E extends Comparable<? super E>> extends TreeIterator<E> {
+        PreorderIterator(BSTreeNode<E> root) {
+            if (root != null) stack.push(root);
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            BSTreeNode<E> node = stack.pop();
+            if (node.getRight() != null) stack.push(node.getRight());
+            if (node.getLeft() != null) stack.push(node.getLeft());
+            return node.getElement();
+        }
+    }
+
+    private static class PostorderIterator<E extends Comparable<? super E>> extends TreeIterator<E> {
+        PostorderIterator(BSTreeNode<E> root) {
+            descend(root);
+        }
+
+        // pushes the path to the first node in post-order below node
+        private void descend(BSTreeNode<E> node) {
+            while (node != null) {
+                stack.push(node);
+                node = node.getLeft() != null ? node.getLeft() : node.getRight();
+            }
         }
 
         @Override
         public E next() {
             if (!hasNext()) throw new NoSuchElementException();
-            return elements.get(index++);
+            BSTreeNode<E> node = stack.pop();
+            BSTreeNode<E> parent = stack.peek();
+            if (parent != null && parent.getLeft() == node) descend(parent.getRight());
+            return node.getElement();
         }
     }
 }
@@ -7,11 +7,15 @@ public class BSTreeNode<E extends Comparable<? super E>> implements Serializable
     private E element;
     private BSTreeNode<E> left;
     private BSTreeNode<E> right;
+    private int height;
+    private int size;
 
     public BSTreeNode(E element) {
         this.element = element;
         this.left = null;
         this.right = null;
+        this.height = 1;
+        this.size = 1;
     }
 
     public E getElement() {
@@ -37,4 +41,22 @@ public class BSTreeNode<E extends Comparable<? super E>> implements Serializable
     public void setRight(BSTreeNode<E> right) {
         this.right = right;
     }
+
+    // only kept up to date by balanced trees
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    // the number of nodes in the subtree rooted here, this node included
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
 }
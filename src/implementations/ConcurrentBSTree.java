@@ -0,0 +1,307 @@
+package implementations;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntBiFunction;
+import java.util.function.ToIntFunction;
+import utilities.BSTreeADT;
+import utilities.Iterator;
+
+/**
+ * A balanced BSTree that can be read and changed by several threads at once.
+ * <p>
+ * Lookups take no lock: they walk the tree optimistically and keep the result
+ * only if no write finished in the meantime, retrying under a shared read
+ * lock otherwise, so readers never block each other and only wait while a
+ * write is actually in progress. Writes take an exclusive lock for the
+ * O(log n) insert or remove. {@link #computeIfAbsent} first looks the key up
+ * without locking, so adding to an element that already exists never waits
+ * for the write lock.
+ * <p>
+ * The iterators walk a copy of the elements taken under the read lock, so
+ * they are never disturbed by later writes. Elements themselves are shared:
+ * one that changes after being added, such as a word collecting occurrences,
+ * is changed through {@link #update} and read through {@link #view} while
+ * other threads may still change it. Both hold the element's monitor, so the
+ * elements need no locking of their own and cost nothing extra when used
+ * outside this tree.
+ */
+public class ConcurrentBSTree<E extends Comparable<? super E>> implements BSTreeADT<E>, Iterable<E> {
+    private static final long serialVersionUID = 1L;
+
+    // no AVL tree of up to 2^31 elements is this tall, so a longer walk has met a half-done rotation
+    private static final int MAX_DEPTH = 64;
+
+    private final BSTree<E> tree = new BSTree<>(true);
+    private final StampedLock lock = new StampedLock();
+
+    // runs a read without locking and keeps its result if no write happened meanwhile;
+    // otherwise, or if the walk tripped over a write in progress, runs it again under the read lock
+    private <R> R read(Supplier<R> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                R result = reader.get();
+                if (lock.validate(stamp)) return result;
+            } catch (RuntimeException e) {
+                // the links were changing under the walk; the locked read below decides
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // a bounded descent, so a cycle seen halfway through a rotation cannot trap an unlocked reader
+    private BSTreeNode<E> find(ToIntFunction<? super E> order) {
+        BSTreeNode<E> node = tree.isEmpty() ? null : tree.getRoot();
+        for (int depth = 0; node != null; depth++) {
+            if (depth == MAX_DEPTH) throw new IllegalStateException("tree changed during the walk");
+            int cmp = order.applyAsInt(node.getElement());
+            if (cmp == 0) return node;
+            node = cmp < 0 ? node.getLeft() : node.getRight();
+        }
+        return null;
+    }
+
+    private <R> R locked(Supplier<R> reader) {
+        long stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private <R> R write(Supplier<R> writer) {
+        long stamp = lock.writeLock();
+        try {
+            return writer.get();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * The root is returned as it is now; its links may change as soon as
+     * another thread writes.
+     */
+    @Override
+    public BSTreeNode<E> getRoot() {
+        return locked(tree::getRoot);
+    }
+
+    @Override
+    public int getHeight() {
+        return read(tree::getHeight);
+    }
+
+    @Override
+    public int size() {
+        return read(tree::size);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return read(tree::isEmpty);
+    }
+
+    @Override
+    public void clear() {
+        write(() -> {
+            tree.clear();
+            return null;
+        });
+    }
+
+    @Override
+    public boolean contains(E element) {
+        return search(element) != null;
+    }
+
+    @Override
+    public BSTreeNode<E> search(E element) {
+        if (element == null) throw new NullPointerException();
+        return read(() -> find(element::compareTo));
+    }
+
+    @Override
+    public boolean add(E element) {
+        if (element == null) throw new NullPointerException();
+        return write(() -> tree.add(element));
+    }
+
+    @Override
+    public <K> E get(K key, ToIntBiFunction<? super K, ? super E> order) {
+        if (key == null || order == null) throw new NullPointerException();
+        BSTreeNode<E> node = read(() -> find(e -> order.applyAsInt(key, e)));
+        return node == null ? null : node.getElement();
+    }
+
+    @Override
+    public <K> E computeIfAbsent(K key, ToIntBiFunction<? super K, ? super E> order,
+                                 Function<? super K, ? extends E> factory) {
+        if (factory == null) throw new NullPointerException();
+        E found = get(key, order);
+        if (found != null) return found;
+        // another thread may have added the key since the lookup; the locked call finds it if so
+        return write(() -> tree.computeIfAbsent(key, order, factory));
+    }
+
+    /**
+     * Finds the element matching key, adding the one the factory makes if
+     * there is none, and changes it while holding its monitor, so threads
+     * changing the same element take turns.
+     *
+     * @param change what to do to the element
+     * @return the element found or added
+     */
+    public <K> E update(K key, ToIntBiFunction<? super K, ? super E> order, Function<? super K, ? extends E> factory,
+                        Consumer<? super E> change) {
+        if (change == null) throw new NullPointerException();
+        E element = computeIfAbsent(key, order, factory);
+        synchronized (element) {
+            change.accept(element);
+        }
+        return element;
+    }
+
+    /**
+     * Reads the element matching key while holding its monitor, so the reader
+     * never sees an {@link #update} half done.
+     *
+     * @param reader what to read from the element
+     * @return what the reader returned, or null if no element matches
+     */
+    public <K, R> R view(K key, ToIntBiFunction<? super K, ? super E> order, Function<? super E, ? extends R> reader) {
+        if (reader == null) throw new NullPointerException();
+        E element = get(key, order);
+        if (element == null) return null;
+        synchronized (element) {
+            return reader.apply(element);
+        }
+    }
+
+    @Override
+    public int rank(E element) {
+        return locked(() -> tree.rank(element));
+    }
+
+    @Override
+    public E select(int index) {
+        return locked(() -> tree.select(index));
+    }
+
+    @Override
+    public int countRange(E lo, E hi) {
+        return locked(() -> tree.countRange(lo, hi));
+    }
+
+    @Override
+    public E ceiling(E element) {
+        return locked(() -> tree.ceiling(element));
+    }
+
+    @Override
+    public E floor(E element) {
+        return locked(() -> tree.floor(element));
+    }
+
+    @Override
+    public E higher(E element) {
+        return locked(() -> tree.higher(element));
+    }
+
+    @Override
+    public E lower(E element) {
+        return locked(() -> tree.lower(element));
+    }
+
+    @Override
+    public BSTreeNode<E> removeMin() {
+        return write(tree::removeMin);
+    }
+
+    @Override
+    public BSTreeNode<E> removeMax() {
+        return write(tree::removeMax);
+    }
+
+    @Override
+    public Iterator<E> inorderIterator() {
+        return locked(() -> copy(tree.inorderIterator()));
+    }
+
+    @Override
+    public Iterator<E> preorderIterator() {
+        return locked(() -> copy(tree.preorderIterator()));
+    }
+
+    @Override
+    public Iterator<E> postorderIterator() {
+        return locked(() -> copy(tree.postorderIterator()));
+    }
+
+    @Override
+    public Iterator<E> rangeIterator(E from, E to) {
+        return locked(() -> copy(tree.rangeIterator(from, to)));
+    }
+
+    @Override
+    public <K> Iterator<E> prefixIterator(K prefix, ToIntBiFunction<? super K, ? super E> prefixOrder) {
+        return locked(() -> copy(tree.prefixIterator(prefix, prefixOrder)));
+    }
+
+    @Override
+    public java.util.Iterator<E> iterator() {
+        return locked(() -> copy(tree.inorderIterator()));
+    }
+
+    private static <E> CopyIterator<E> copy(Iterator<E> it) {
+        List<E> elements = new ArrayList<>();
+        while (it.hasNext()) {
+            elements.add(it.next());
+        }
+        return new CopyIterator<>(elements);
+    }
+
+    // the tree is written as it is at one moment; the lock itself is written unlocked
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            out.defaultWriteObject();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static class CopyIterator<E> implements Iterator<E>, java.util.Iterator<E> {
+        private final List<E> elements;
+        private int next;
+
+        CopyIterator(List<E> elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < elements.size();
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return elements.get(next++);
+        }
+    }
+}
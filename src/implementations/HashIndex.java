@@ -0,0 +1,176 @@
+package implementations;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * An open-addressing hash table of elements found by key, for collecting a set
+ * of elements when only exact lookups are needed and order only matters at the
+ * end, such as counting the words of a file. A lookup hashes the key once and
+ * usually compares it to one element, instead of comparing it down a tree
+ * path; {@link #toTree()} then sorts the elements once into a balanced
+ * {@link BSTree} for in-order and range queries.
+ * <p>
+ * The hash and the order must agree with each other and with the elements'
+ * natural order: keys that the order finds equal to an element must hash the
+ * same as that element's key, and elements with different keys must not be
+ * equal by compareTo. Elements cannot be removed. Not thread-safe.
+ *
+ * @param <K> the type of the keys
+ * @param <E> the type of the elements
+ */
+public class HashIndex<K, E extends Comparable<? super E>> implements Iterable<E> {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final ToIntFunction<? super K> hash;
+    private final ToIntBiFunction<? super K, ? super E> order;
+    // linear probing over a power-of-two table at most half full; an empty slot is null,
+    // and the key hash of each element is kept beside it so a growing table need not rehash
+    private Object[] elements;
+    private int[] hashes;
+    private int size;
+
+    /**
+     * @param hash  hashes a key
+     * @param order 0 when a key matches an element, as in
+     *              {@link BSTree#get(Object, ToIntBiFunction)}
+     */
+    public HashIndex(ToIntFunction<? super K> hash, ToIntBiFunction<? super K, ? super E> order) {
+        this(hash, order, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expected the number of elements to make room for up front
+     */
+    public HashIndex(ToIntFunction<? super K> hash, ToIntBiFunction<? super K, ? super E> order, int expected) {
+        if (hash == null || order == null) throw new NullPointerException();
+        if (expected < 0) throw new IllegalArgumentException("negative capacity " + expected);
+        this.hash = hash;
+        this.order = order;
+        int capacity = Integer.highestOneBit(Math.max(expected, DEFAULT_CAPACITY / 2) * 2 - 1) << 1;
+        elements = new Object[capacity];
+        hashes = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the element matching key, or null if there is none
+     */
+    public E get(K key) {
+        if (key == null) throw new NullPointerException();
+        int h = hash.applyAsInt(key);
+        int mask = elements.length - 1;
+        for (int i = slot(h, mask); elements[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == h && order.applyAsInt(key, element(i)) == 0) return element(i);
+        }
+        return null;
+    }
+
+    /**
+     * Finds the element matching key, adding the one the factory makes from
+     * the key if there is none.
+     *
+     * @return the element found or added
+     * @throws NullPointerException if the factory returns null
+     */
+    public E computeIfAbsent(K key, Function<? super K, ? extends E> factory) {
+        if (key == null || factory == null) throw new NullPointerException();
+        int h = hash.applyAsInt(key);
+        int mask = elements.length - 1;
+        int i = slot(h, mask);
+        for (; elements[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == h && order.applyAsInt(key, element(i)) == 0) return element(i);
+        }
+        E element = factory.apply(key);
+        if (element == null) throw new NullPointerException("factory returned null");
+        elements[i] = element;
+        hashes[i] = h;
+        if (++size * 2 > elements.length) grow();
+        return element;
+    }
+
+    /**
+     * @return a balanced tree of the elements, built in O(n log n) by sorting
+     *         them; the index is left as it is
+     * @throws IllegalArgumentException if two elements are equal by compareTo
+     */
+    public BSTree<E> toTree() {
+        Object[] sorted = new Object[size];
+        int n = 0;
+        for (Object element : elements) {
+            if (element != null) sorted[n++] = element;
+        }
+        Arrays.sort(sorted);
+        return BSTree.fromSorted(HashIndex.<E>iterate(sorted), n);
+    }
+
+    // the elements of an array that holds nothing but Es
+    @SuppressWarnings("unchecked")
+    private static <E> java.util.Iterator<E> iterate(Object[] elements) {
+        return (java.util.Iterator<E>) Arrays.asList(elements).iterator();
+    }
+
+    /**
+     * @return the elements in no particular order
+     */
+    @Override
+    public java.util.Iterator<E> iterator() {
+        return new java.util.Iterator<E>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < elements.length && elements[from] == null) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < elements.length;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                E element = element(next);
+                next = advance(next + 1);
+                return element;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private E element(int i) {
+        return (E) elements[i];
+    }
+
+    // a Fibonacci hash with its high bits folded down, so hashes that differ only in the high bits still spread
+    private static int slot(int h, int mask) {
+        int mixed = h * 0x9E3779B9;
+        return (mixed ^ (mixed >>> 16)) & mask;
+    }
+
+    private void grow() {
+        Object[] oldElements = elements;
+        int[] oldHashes = hashes;
+        elements = new Object[oldElements.length * 2];
+        hashes = new int[elements.length];
+        int mask = elements.length - 1;
+        for (int j = 0; j < oldElements.length; j++) {
+            if (oldElements[j] == null) continue;
+            int i = slot(oldHashes[j], mask);
+            while (elements[i] != null) i = (i + 1) & mask;
+            elements[i] = oldElements[j];
+            hashes[i] = oldHashes[j];
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package implementations;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
+import utilities.BSTreeADT;
+import utilities.Iterator;
+
+/**
+ * A balanced (AVL) binary search tree whose nodes are never changed once they
+ * are in the tree. An insert or remove copies only the nodes on the path it
+ * walks, about log2(n) of them, and shares every other subtree with the tree
+ * as it was before, so {@link #snapshot()} is O(1) and a snapshot never
+ * changes, whatever is done to the tree afterwards.
+ * <p>
+ * The whole state is one root reference, replaced after each change, so
+ * readers and snapshots need no locks and always see either all of a change
+ * or none of it; {@link #putAll(Iterable, BinaryOperator)} publishes a whole
+ * batch at once. Changes are serialized on the tree. The elements are shared
+ * between snapshots, so an element must not be changed after it is added;
+ * {@link #put(Comparable, BinaryOperator)} replaces one with a combined copy
+ * instead.
+ */
+public class PersistentBSTree<E extends Comparable<? super E>> implements BSTreeADT<E>, Iterable<E> {
+    private static final long serialVersionUID = 1L;
+
+    // every subtree reachable from here is final; the size is the root's subtree size
+    private transient volatile BSTreeNode<E> root;
+
+    public PersistentBSTree() {
+    }
+
+    private PersistentBSTree(BSTreeNode<E> root) {
+        this.root = root;
+    }
+
+    /**
+     * Builds a perfectly balanced tree from elements in strictly increasing
+     * order in linear time.
+     *
+     * @param sorted supplies the elements in ascending order
+     * @param count  the number of elements to take from the iterator
+     * @return the new tree
+     * @throws IllegalArgumentException if the elements are not strictly
+     *                                  increasing or there are fewer than
+     *                                  count of them
+     */
+    public static <E extends Comparable<? super E>> PersistentBSTree<E> fromSorted(java.util.Iterator<? extends E> sorted,
+                                                                                   int count) {
+        BSTree<E> built = BSTree.fromSorted(sorted, count);
+        return new PersistentBSTree<>(built.isEmpty() ? null : built.getRoot());
+    }
+
+    /**
+     * @return a tree holding the elements as they are now, in O(1) time; later
+     *         changes to either tree do not affect the other
+     */
+    public PersistentBSTree<E> snapshot() {
+        return new PersistentBSTree<>(root);
+    }
+
+    // the query and iterator code of BSTree, run over the root as it is now
+    private BSTree<E> view() {
+        return BSTree.view(root);
+    }
+
+    @Override
+    public BSTreeNode<E> getRoot() {
+        BSTreeNode<E> r = root;
+        if (r == null) throw new NullPointerException();
+        return r;
+    }
+
+    @Override
+    public int getHeight() {
+        return height(root);
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public synchronized void clear() {
+        root = null;
+    }
+
+    @Override
+    public boolean contains(E element) {
+        return search(element) != null;
+    }
+
+    @Override
+    public BSTreeNode<E> search(E element) {
+        return view().search(element);
+    }
+
+    @Override
+    public <K> E get(K key, ToIntBiFunction<? super K, ? super E> order) {
+        return view().get(key, order);
+    }
+
+    @Override
+    public synchronized boolean add(E element) {
+        if (element == null) throw new NullPointerException();
+        BSTreeNode<E> before = root;
+        root = insert(before, element, null);
+        return size(root) > size(before);
+    }
+
+    /**
+     * Adds an element, or replaces an equal one with the two combined.
+     *
+     * @param element the element to add
+     * @param combine makes the element to keep from the one in the tree and the
+     *                new one, which it must not change; it is called only if an
+     *                equal element is present
+     * @throws NullPointerException if an argument or the combined element is null
+     */
+    public synchronized void put(E element, BinaryOperator<E> combine) {
+        if (element == null || combine == null) throw new NullPointerException();
+        root = insert(root, element, combine);
+    }
+
+    /**
+     * Puts every element as in {@link #put(Comparable, BinaryOperator)}, and
+     * makes them visible to readers all at once when the last one is in.
+     *
+     * @param elements the elements to add
+     * @param combine  makes the element to keep from two equal ones
+     * @throws NullPointerException if an argument, an element or a combined
+     *                              element is null
+     */
+    public synchronized void putAll(Iterable<? extends E> elements, BinaryOperator<E> combine) {
+        if (elements == null || combine == null) throw new NullPointerException();
+        BSTreeNode<E> r = root;
+        for (E element : elements) {
+            if (element == null) throw new NullPointerException();
+            r = insert(r, element, combine);
+        }
+        root = r;
+    }
+
+    @Override
+    public <K> E computeIfAbsent(K key, ToIntBiFunction<? super K, ? super E> order,
+                                 Function<? super K, ? extends E> factory) {
+        if (factory == null) throw new NullPointerException();
+        E found = get(key, order);
+        if (found != null) return found;
+        synchronized (this) {
+            // added by another thread since the lookup
+            found = get(key, order);
+            if (found != null) return found;
+            E element = factory.apply(key);
+            if (element == null) throw new NullPointerException("factory returned null");
+            root = insert(root, element, null);
+            return element;
+        }
+    }
+
+    @Override
+    public int rank(E element) {
+        return view().rank(element);
+    }
+
+    @Override
+    public E select(int index) {
+        return view().select(index);
+    }
+
+    @Override
+    public int countRange(E lo, E hi) {
+        return view().countRange(lo, hi);
+    }
+
+    @Override
+    public E ceiling(E element) {
+        return view().ceiling(element);
+    }
+
+    @Override
+    public E floor(E element) {
+        return view().floor(element);
+    }
+
+    @Override
+    public E higher(E element) {
+        return view().higher(element);
+    }
+
+    @Override
+    public E lower(E element) {
+        return view().lower(element);
+    }
+
+    @Override
+    public synchronized BSTreeNode<E> removeMin() {
+        BSTreeNode<E> r = root;
+        if (r == null) return null;
+        BSTreeNode<E> min = r;
+        while (min.getLeft() != null) {
+            min = min.getLeft();
+        }
+        root = withoutMin(r);
+        return min;
+    }
+
+    @Override
+    public synchronized BSTreeNode<E> removeMax() {
+        BSTreeNode<E> r = root;
+        if (r == null) return null;
+        BSTreeNode<E> max = r;
+        while (max.getRight() != null) {
+            max = max.getRight();
+        }
+        root = withoutMax(r);
+        return max;
+    }
+
+    // the iterators walk the nodes as they were when the iterator was made, so they
+    // can be used while the tree changes
+    @Override
+    public Iterator<E> inorderIterator() {
+        return view().inorderIterator();
+    }
+
+    @Override
+    public Iterator<E> preorderIterator() {
+        return view().preorderIterator();
+    }
+
+    @Override
+    public Iterator<E> postorderIterator() {
+        return view().postorderIterator();
+    }
+
+    @Override
+    public Iterator<E> rangeIterator(E from, E to) {
+        return view().rangeIterator(from, to);
+    }
+
+    @Override
+    public <K> Iterator<E> prefixIterator(K prefix, ToIntBiFunction<? super K, ? super E> prefixOrder) {
+        return view().prefixIterator(prefix, prefixOrder);
+    }
+
+    @Override
+    public java.util.Iterator<E> iterator() {
+        return view().iterator();
+    }
+
+    // a copy of node with element in place of its own element, or node itself if unchanged;
+    // recursion is bounded by the AVL height
+    private static <E extends Comparable<? super E>> BSTreeNode<E> insert(BSTreeNode<E> node, E element,
+                                                                         BinaryOperator<E> combine) {
+        if (node == null) return node(element, null, null);
+        int cmp = element.compareTo(node.getElement());
+        if (cmp == 0) {
+            if (combine == null) return node;
+            E combined = combine.apply(node.getElement(), element);
+            if (combined == null) throw new NullPointerException("combine returned null");
+            return node(combined, node.getLeft(), node.getRight());
+        }
+        if (cmp < 0) {
+            BSTreeNode<E> left = insert(node.getLeft(), element, combine);
+            return left == node.getLeft() ? node : balance(node.getElement(), left, node.getRight());
+        }
+        BSTreeNode<E> right = insert(node.getRight(), element, combine);
+        return right == node.getRight() ? node : balance(node.getElement(), node.getLeft(), right);
+    }
+
+    private static <E extends Comparable<? super E>> BSTreeNode<E> withoutMin(BSTreeNode<E> node) {
+        if (node.getLeft() == null) return node.getRight();
+        return balance(node.getElement(), withoutMin(node.getLeft()), node.getRight());
+    }
+
+    private static <E extends Comparable<? super E>> BSTreeNode<E> withoutMax(BSTreeNode<E> node) {
+        if (node.getRight() == null) return node.getLeft();
+        return balance(node.getElement(), node.getLeft(), withoutMax(node.getRight()));
+    }
+
+    // a new subtree holding element between left and right, rotated if they differ in
+    // height by two; every node it changes is a new one
+    private static <E extends Comparable<? super E>> BSTreeNode<E> balance(E element, BSTreeNode<E> left, BSTreeNode<E> right) {
+        int diff = height(left) - height(right);
+        if (diff > 1) {
+            BSTreeNode<E> inner = left.getRight();
+            if (height(left.getLeft()) >= height(inner)) {
+                return node(left.getElement(), left.getLeft(), node(element, inner, right));
+            }
+            return node(inner.getElement(), node(left.getElement(), left.getLeft(), inner.getLeft()),
+                    node(element, inner.getRight(), right));
+        }
+        if (diff < -1) {
+            BSTreeNode<E> inner = right.getLeft();
+            if (height(right.getRight()) >= height(inner)) {
+                return node(right.getElement(), node(element, left, inner), right.getRight());
+            }
+            return node(inner.getElement(), node(element, left, inner.getLeft()),
+                    node(right.getElement(), inner.getRight(), right.getRight()));
+        }
+        return node(element, left, right);
+    }
+
+    private static <E extends Comparable<? super E>> BSTreeNode<E> node(E element, BSTreeNode<E> left, BSTreeNode<E> right) {
+        BSTreeNode<E> node = new BSTreeNode<>(element);
+        node.setLeft(left);
+        node.setRight(right);
+        node.setHeight(1 + Math.max(height(left), height(right)));
+        node.setSize(1 + size(left) + size(right));
+        return node;
+    }
+
+    private static int height(BSTreeNode<?> node) {
+        return node == null ? 0 : node.getHeight();
+    }
+
+    private static int size(BSTreeNode<?> node) {
+        return node == null ? 0 : node.getSize();
+    }
+
+    // written as a count and the elements in order, and rebuilt balanced on read
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        BSTree<E> current = view();
+        out.defaultWriteObject();
+        out.writeInt(current.size());
+        for (E element : current) {
+            out.writeObject(element);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int count = in.readInt();
+        if (count < 0) throw new InvalidObjectException("negative tree size " + count);
+        List<E> elements = new ArrayList<>(Math.min(count, 1 << 16));
+        for (int i = 0; i < count; i++) {
+            elements.add((E) in.readObject());
+        }
+        try {
+            root = fromSorted(elements.iterator(), count).root;
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new InvalidObjectException(e.getMessage());
+        }
+    }
+}
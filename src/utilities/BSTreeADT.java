@@ -4,6 +4,8 @@
 package utilities;
 
 import java.io.Serializable;
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
 
 import implementations.BSTreeNode;
 
@@ -86,6 +88,135 @@ public interface BSTreeADT<E extends Comparable<? super E>> extends	Serializable
 	 */
 	public boolean add( E newEntry ) throws NullPointerException;
 
+	/**
+	 * Retrieves an element from the tree given a key, without having to construct
+	 * an element to search with. The key order must agree with the natural ordering
+	 * of the elements.
+	 * 
+	 * @param <K> the type of the key
+	 * @param key the key being searched
+	 * @param order compares the key against an element, returning a negative
+	 *        number, zero or a positive number as the key sorts before, equal to or
+	 *        after the element
+	 * @return the element matching the key, null if not found
+	 * @throws NullPointerException if the key or the order is null
+	 */
+	public <K> E get( K key, ToIntBiFunction<? super K, ? super E> order ) throws NullPointerException;
+
+	/**
+	 * Retrieves the element matching the given key, adding the element created by
+	 * the factory if there is none. The search and the insert share a single
+	 * descent of the tree, and the factory is only called when the key is missing.
+	 * The created element must sort equal to the key.
+	 * 
+	 * @param <K> the type of the key
+	 * @param key the key being searched
+	 * @param order compares the key against an element, as in
+	 *        {@link #get(Object, ToIntBiFunction)}
+	 * @param factory creates the element to add when the key is missing
+	 * @return the element already in the tree, or the newly added element
+	 * @throws NullPointerException if the key, the order, the factory or the
+	 *         created element is null
+	 */
+	public <K> E computeIfAbsent( K key, ToIntBiFunction<? super K, ? super E> order,
+			Function<? super K, ? extends E> factory ) throws NullPointerException;
+
+	/**
+	 * Counts the elements that are smaller than the given element, which is the
+	 * position the element has, or would have, in an in-order iteration.
+	 * 
+	 * @param element the element to rank; it does not have to be in the tree
+	 * @return the number of elements smaller than element
+	 * @throws NullPointerException if the element being passed in is null
+	 */
+	public int rank( E element ) throws NullPointerException;
+
+	/**
+	 * Retrieves the element at the given position of an in-order iteration
+	 * without iterating up to it.
+	 * 
+	 * @param index the position, starting at 0 for the smallest element
+	 * @return the element at that position
+	 * @throws IndexOutOfBoundsException if index is negative or not less than
+	 *                                   size()
+	 */
+	public E select( int index ) throws IndexOutOfBoundsException;
+
+	/**
+	 * Counts the elements between two bounds, both included.
+	 * 
+	 * @param lo the smallest element to count
+	 * @param hi the largest element to count
+	 * @return the number of elements e with lo &lt;= e &lt;= hi, 0 if lo is
+	 *         greater than hi
+	 * @throws NullPointerException if either bound is null
+	 */
+	public int countRange( E lo, E hi ) throws NullPointerException;
+
+	/**
+	 * Finds the smallest element greater than or equal to the given element.
+	 * 
+	 * @param element the element to compare with
+	 * @return the matching element, or null if there is none
+	 * @throws NullPointerException if the element being passed in is null
+	 */
+	public E ceiling( E element ) throws NullPointerException;
+
+	/**
+	 * Finds the largest element less than or equal to the given element.
+	 * 
+	 * @param element the element to compare with
+	 * @return the matching element, or null if there is none
+	 * @throws NullPointerException if the element being passed in is null
+	 */
+	public E floor( E element ) throws NullPointerException;
+
+	/**
+	 * Finds the smallest element strictly greater than the given element.
+	 * 
+	 * @param element the element to compare with
+	 * @return the matching element, or null if there is none
+	 * @throws NullPointerException if the element being passed in is null
+	 */
+	public E higher( E element ) throws NullPointerException;
+
+	/**
+	 * Finds the largest element strictly less than the given element.
+	 * 
+	 * @param element the element to compare with
+	 * @return the matching element, or null if there is none
+	 * @throws NullPointerException if the element being passed in is null
+	 */
+	public E lower( E element ) throws NullPointerException;
+
+	/**
+	 * Generates an in-order iteration over the elements from one element up to,
+	 * but not including, another, without walking the elements before the
+	 * range.
+	 * 
+	 * @param from the smallest element to include, or null to start at the
+	 *             smallest element of the tree
+	 * @param to   the element to stop before, or null to run to the largest
+	 *             element of the tree
+	 * @return an iterator with the elements of the range in their natural order
+	 */
+	public Iterator<E> rangeIterator( E from, E to );
+
+	/**
+	 * Generates an in-order iteration over the elements that start with a
+	 * prefix, walking only the path to the first match and the matches.
+	 * 
+	 * @param <K> the type of the prefix
+	 * @param prefix the prefix key
+	 * @param prefixOrder returns zero for an element that starts with the prefix,
+	 *        and otherwise a negative or positive number as the prefix sorts
+	 *        before or after the element
+	 * @return an iterator with the matching elements in their natural order
+	 * @throws NullPointerException if the prefix or the prefix order is null
+	 */
+	public <K> Iterator<E> prefixIterator( K prefix, ToIntBiFunction<? super K, ? super E> prefixOrder )
+			throws NullPointerException;
+
 	/**
 	 * Removes the smallest element in the tree according to the natural ordering
 	 * established by the Comparable implementation.
@@ -0,0 +1,238 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import appDomain.WordTracker.WordEntry;
+import implementations.ArrayBSTree;
+import implementations.BSTree;
+import utilities.BSTreeADT;
+import utilities.Iterator;
+
+/**
+ * Class Description: Tests for the array-backed
+ * {@link implementations.ArrayBSTree}, mostly against a balanced
+ * {@link implementations.BSTree} given the same changes.
+ */
+public class ArrayBSTreeTest
+{
+	private static String contents( Iterator<Integer> it )
+	{
+		StringBuilder sb = new StringBuilder();
+		while( it.hasNext() )
+		{
+			sb.append( it.next() ).append( ' ' );
+		}
+		return sb.toString().trim();
+	}
+
+	/**
+	 * Checks that two trees hold the same elements in the same shape.
+	 */
+	private static void assertSameTree( BSTreeADT<Integer> expected, BSTreeADT<Integer> actual )
+	{
+		assertEquals( "Failed to keep size.", expected.size(), actual.size() );
+		assertEquals( "Failed to keep height.", expected.getHeight(), actual.getHeight() );
+		assertEquals( "Failed to keep order.", contents( expected.inorderIterator() ),
+				contents( actual.inorderIterator() ) );
+		assertEquals( "Failed to keep shape.", contents( expected.preorderIterator() ),
+				contents( actual.preorderIterator() ) );
+		assertEquals( "Failed to walk post-order.", contents( expected.postorderIterator() ),
+				contents( actual.postorderIterator() ) );
+	}
+
+	/**
+	 * Test that adds and removes rebalance exactly as a balanced BSTree does.
+	 */
+	@Test
+	public void testMatchesBSTree()
+	{
+		BSTree<Integer> expected = new BSTree<Integer>( true );
+		ArrayBSTree<Integer> actual = new ArrayBSTree<Integer>( 0 );
+		Random random = new Random( 23 );
+		for( int i = 0; i < 3000; i++ )
+		{
+			int value = random.nextInt( 2000 );
+			assertEquals( "Failed to add " + value, expected.add( value ), actual.add( value ) );
+			if( i % 7 == 3 )
+			{
+				assertEquals( expected.removeMin().getElement(), actual.removeMin().getElement() );
+			}
+			if( i % 11 == 5 )
+			{
+				assertEquals( expected.removeMax().getElement(), actual.removeMax().getElement() );
+			}
+		}
+		assertSameTree( expected, actual );
+		assertEquals( "Failed to copy the root.", expected.getRoot().getElement(), actual.getRoot().getElement() );
+		assertEquals( expected.getRoot().getSize(), actual.getRoot().getSize() );
+		assertNull( "Root copy should be detached.", actual.getRoot().getLeft() );
+
+		for( int probe = -5; probe < 2005; probe += 3 )
+		{
+			assertEquals( "Failed to rank.", expected.rank( probe ), actual.rank( probe ) );
+			assertEquals( "Failed to find ceiling.", expected.ceiling( probe ), actual.ceiling( probe ) );
+			assertEquals( "Failed to find floor.", expected.floor( probe ), actual.floor( probe ) );
+			assertEquals( "Failed to find higher.", expected.higher( probe ), actual.higher( probe ) );
+			assertEquals( "Failed to find lower.", expected.lower( probe ), actual.lower( probe ) );
+			assertEquals( "Failed to count range.", expected.countRange( probe, probe + 100 ),
+					actual.countRange( probe, probe + 100 ) );
+			assertEquals( "Failed to search.", expected.contains( probe ), actual.contains( probe ) );
+		}
+		for( int index = 0; index < actual.size(); index += 17 )
+		{
+			assertEquals( "Failed to select.", expected.select( index ), actual.select( index ) );
+		}
+		assertEquals( "Failed to iterate a range.", contents( expected.rangeIterator( 100, 300 ) ),
+				contents( actual.rangeIterator( 100, 300 ) ) );
+		assertEquals( contents( expected.rangeIterator( null, 50 ) ), contents( actual.rangeIterator( null, 50 ) ) );
+		assertEquals( contents( expected.rangeIterator( 1900, null ) ),
+				contents( actual.rangeIterator( 1900, null ) ) );
+	}
+
+	/**
+	 * Test the edge cases of an empty tree and of reusing removed slots.
+	 */
+	@Test
+	public void testEmptyAndReuse()
+	{
+		ArrayBSTree<Integer> tree = new ArrayBSTree<Integer>();
+		assertTrue( tree.isEmpty() );
+		assertEquals( 0, tree.getHeight() );
+		assertNull( tree.removeMin() );
+		assertNull( tree.search( 1 ) );
+		assertFalse( tree.inorderIterator().hasNext() );
+		assertFalse( tree.postorderIterator().hasNext() );
+		try
+		{
+			tree.getRoot();
+			fail( "Failed to throw for an empty tree." );
+		}
+		catch( NullPointerException e )
+		{
+			// expected
+		}
+		try
+		{
+			tree.inorderIterator().next();
+			fail( "Failed to throw past the end." );
+		}
+		catch( NoSuchElementException e )
+		{
+			// expected
+		}
+
+		for( int round = 0; round < 3; round++ )
+		{
+			for( int i = 0; i < 100; i++ )
+			{
+				tree.add( i );
+			}
+			while( tree.size() > 10 )
+			{
+				tree.removeMax();
+			}
+		}
+		assertEquals( "Failed to reuse slots.", "0 1 2 3 4 5 6 7 8 9", contents( tree.inorderIterator() ) );
+		assertEquals( Integer.valueOf( 4 ), tree.search( 4 ).getElement() );
+		tree.clear();
+		assertTrue( tree.isEmpty() );
+		assertTrue( tree.add( 42 ) );
+		assertEquals( Integer.valueOf( 42 ), tree.getRoot().getElement() );
+	}
+
+	/**
+	 * Test that adding the instance already stored reports a duplicate, as
+	 * BSTree does.
+	 */
+	@Test
+	public void testAddSameInstance()
+	{
+		BSTree<Integer> expected = new BSTree<Integer>( true );
+		ArrayBSTree<Integer> tree = new ArrayBSTree<Integer>();
+		Integer five = 5;
+		assertTrue( tree.add( five ) );
+		assertFalse( "Failed to reject the stored instance.", tree.add( five ) );
+		assertTrue( expected.add( five ) );
+		assertEquals( expected.add( five ), tree.add( Integer.valueOf( 5 ) ) );
+		assertTrue( tree.add( 7 ) );
+		assertFalse( "Failed to reject a cached Integer.", tree.add( 7 ) );
+		assertEquals( "Failed to keep size.", 2, tree.size() );
+	}
+
+	/**
+	 * Test building from sorted elements, and lookups and upserts by key.
+	 */
+	@Test
+	public void testFromSortedAndKeys()
+	{
+		Integer[] sorted = new Integer[100];
+		for( int i = 0; i < sorted.length; i++ )
+		{
+			sorted[i] = i * 2;
+		}
+		ArrayBSTree<Integer> tree = ArrayBSTree.fromSorted( Arrays.asList( sorted ).iterator(), sorted.length );
+		assertSameTree( BSTree.fromSorted( sorted ), tree );
+		try
+		{
+			ArrayBSTree.fromSorted( Arrays.asList( 1, 3, 2 ).iterator(), 3 );
+			fail( "Failed to reject unsorted elements." );
+		}
+		catch( IllegalArgumentException e )
+		{
+			// expected
+		}
+
+		ArrayBSTree<WordEntry> words = new ArrayBSTree<WordEntry>();
+		WordEntry kitty = words.computeIfAbsent( "Kitty", WordEntry.KEY_ORDER, WordEntry::new );
+		words.computeIfAbsent( "apple", WordEntry.KEY_ORDER, WordEntry::new );
+		words.computeIfAbsent( "kitten", WordEntry.KEY_ORDER, WordEntry::new );
+		assertSame( "Failed to find the existing entry.", kitty,
+				words.computeIfAbsent( "kitty", WordEntry.KEY_ORDER, WordEntry::new ) );
+		assertSame( kitty, words.get( "KITTY", WordEntry.KEY_ORDER ) );
+		assertNull( words.get( "zebra", WordEntry.KEY_ORDER ) );
+		assertEquals( 3, words.size() );
+		Iterator<WordEntry> prefixed = words.prefixIterator( "kit", WordEntry.PREFIX_ORDER );
+		assertTrue( prefixed.hasNext() );
+		assertEquals( "Failed to iterate a prefix.", "kitten", prefixed.next().getWord() );
+		assertSame( kitty, prefixed.next() );
+		assertFalse( prefixed.hasNext() );
+	}
+
+	/**
+	 * Test that a tree survives serialization.
+	 *
+	 * @throws Exception if serialization fails
+	 */
+	@Test
+	public void testSerialization() throws Exception
+	{
+		ArrayBSTree<Integer> tree = new ArrayBSTree<Integer>();
+		for( int i = 0; i < 100; i++ )
+		{
+			tree.add( ( i * 37 ) % 100 );
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try( ObjectOutputStream out = new ObjectOutputStream( bytes ) )
+		{
+			out.writeObject( tree );
+		}
+		try( ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) )
+		{
+			@SuppressWarnings( "unchecked" )
+			ArrayBSTree<Integer> copy = (ArrayBSTree<Integer>) in.readObject();
+			assertEquals( "Failed to restore.", contents( tree.inorderIterator() ), contents( copy.inorderIterator() ) );
+			assertEquals( "Failed to rebalance.", 7, copy.getHeight() );
+			assertTrue( copy.add( 100 ) );
+		}
+	}
+}
@@ -2,6 +2,15 @@ package unitTests;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -607,4 +616,626 @@ public class BSTreeTest
 	{
 		assertNull( "Failed to return maximum value.", tree.removeMax() );
 	}
+
+	/**
+	 * Test method for {@link implementations.BSTree#BSTree(boolean)} to keep the
+	 * height logarithmic when sorted elements are added to a balanced tree.
+	 */
+	@Test
+	public void testBalanced_SortedInsertHeight()
+	{
+		BSTree<Integer> balanced = new BSTree<Integer>( true );
+		for( int i = 1; i <= 1023; i++ )
+		{
+			assertTrue( balanced.add( i ) );
+		}
+		assertFalse( "Duplicate should not be added.", balanced.add( 512 ) );
+		assertEquals( "Failed to update size correctly.", 1023, balanced.size() );
+		assertEquals( "Height of balanced tree should be ", 10, balanced.getHeight() );
+		assertEquals( "Root of balanced tree should be ", 512, (int) balanced.getRoot().getElement() );
+	}
+
+	/**
+	 * Test method for {@link implementations.BSTree#BSTree(boolean)} to keep the
+	 * in-order iteration sorted after rotations.
+	 */
+	@Test
+	public void testBalanced_InorderIterator()
+	{
+		BSTree<Integer> balanced = new BSTree<Integer>( true );
+		balanced.add( seven );
+		balanced.add( six );
+		balanced.add( five );
+		balanced.add( one );
+		balanced.add( two );
+		balanced.add( four );
+		balanced.add( three );
+
+		Integer[] shouldBe = { one, two, three, four, five, six, seven };
+		Iterator<Integer> it = balanced.inorderIterator();
+		int i = 0;
+		while( it.hasNext() )
+		{
+			assertEquals( "Balanced in-order iterator is out of order ", shouldBe[i++], it.next() );
+		}
+		assertEquals( "Failed to iterate every element.", 7, i );
+		assertTrue( "Height of balanced tree too large.", balanced.getHeight() <= 4 );
+	}
+
+	/**
+	 * Test method for {@link implementations.BSTree#removeMin()} and
+	 * {@link implementations.BSTree#removeMax()} to keep a balanced tree balanced.
+	 */
+	@Test
+	public void testBalanced_RemoveMinMax()
+	{
+		BSTree<Integer> balanced = new BSTree<Integer>( true );
+		for( int i = 1; i <= 100; i++ )
+		{
+			balanced.add( i );
+		}
+		for( int i = 1; i <= 40; i++ )
+		{
+			assertEquals( "Failed to return minimum value.", i, (int) balanced.removeMin().getElement() );
+		}
+		for( int i = 100; i > 80; i-- )
+		{
+			assertEquals( "Failed to return maximum value.", i, (int) balanced.removeMax().getElement() );
+		}
+		assertEquals( "Failed to update size.", 40, balanced.size() );
+		assertTrue( "Height of balanced tree too large.", balanced.getHeight() <= 6 );
+		assertTrue( balanced.contains( 41 ) );
+		assertTrue( balanced.contains( 80 ) );
+		assertFalse( balanced.contains( 81 ) );
+	}
+
+	/**
+	 * Test method for {@link implementations.BSTree#add(java.lang.Comparable)},
+	 * {@link implementations.BSTree#getHeight()} and the iterators on a
+	 * degenerate tree deeper than the call stack allows for recursion.
+	 */
+	@Test
+	public void testDegenerateTree_NoStackOverflow()
+	{
+		int count = 200000;
+		for( int i = 0; i < count; i++ )
+		{
+			tree.add( i );
+		}
+		assertEquals( "Height of degenerate tree should be ", count, tree.getHeight() );
+		assertNotNull( tree.search( count - 1 ) );
+
+		Iterator<Integer> it = tree.postorderIterator();
+		int expected = count - 1;
+		while( it.hasNext() )
+		{
+			assertEquals( "Postorder iterator is out of order ", expected--, (int) it.next() );
+		}
+		assertEquals( "Failed to remove the maximum value.", count - 1, (int) tree.removeMax().getElement() );
+		assertEquals( "Failed to return minimum value.", 0, (int) tree.removeMin().getElement() );
+		assertEquals( "Failed to update size.", count - 2, tree.size() );
+	}
+
+	/**
+	 * Test method for the serialized form of {@link implementations.BSTree} to
+	 * restore the same shape without recursing once per node.
+	 *
+	 * @throws Exception if the tree cannot be written or read back
+	 */
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testSerialization_RoundTrip() throws Exception
+	{
+		for( int i = 0; i < 100000; i++ )
+		{
+			tree.add( i );
+		}
+		BSTree<Integer> balanced = new BSTree<Integer>( true );
+		balanced.add( four );
+		balanced.add( two );
+		balanced.add( six );
+		balanced.add( one );
+		balanced.add( five );
+		balanced.add( three );
+		balanced.add( seven );
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream( bytes );
+		out.writeObject( tree );
+		out.writeObject( balanced );
+		out.close();
+		ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+		BSTree<Integer> copy = (BSTree<Integer>) in.readObject();
+		BSTree<Integer> balancedCopy = (BSTree<Integer>) in.readObject();
+
+		assertEquals( "Failed to restore size.", 100000, copy.size() );
+		assertEquals( "Failed to restore height.", 100000, copy.getHeight() );
+		assertTrue( balancedCopy.isBalanced() );
+		assertEquals( "Failed to restore height.", 3, balancedCopy.getHeight() );
+
+		Integer[] shouldBe = { four, two, one, three, six, five, seven };
+		Iterator<Integer> it = balancedCopy.preorderIterator();
+		int i = 0;
+		while( it.hasNext() )
+		{
+			assertEquals( "Restored tree has a different shape ", shouldBe[i++], it.next() );
+		}
+		balancedCopy.add( 88 );
+		balancedCopy.add( 99 );
+		assertEquals( "Restored tree failed to rebalance.", 4, balancedCopy.getHeight() );
+	}
+
+	/**
+	 * Test method for {@link implementations.BSTree#stream()} to feed the
+	 * elements in order into a stream pipeline.
+	 */
+	@Test
+	public void testStream()
+	{
+		tree.add( four );
+		tree.add( two );
+		tree.add( six );
+		tree.add( one );
+		tree.add( five );
+		tree.add( three );
+		tree.add( seven );
+
+		List<Integer> firstThree = tree.stream().limit( 3 ).collect( Collectors.toList() );
+		assertEquals( "Stream is out of order ", Arrays.asList( one, two, three ), firstThree );
+		assertEquals( "Failed to sum the stream.", 308, tree.stream().mapToInt( Integer::intValue ).sum() );
+		assertEquals( "Parallel stream is out of order ", Arrays.asList( one, two, three, four, five, six, seven ),
+				tree.stream().parallel().collect( Collectors.toList() ) );
+	}
+
+	/**
+	 * Test method for {@link implementations.BSTree#spliterator()} to report the
+	 * size and the sorted, distinct characteristics of the tree.
+	 */
+	@Test
+	public void testSpliterator()
+	{
+		tree.add( four );
+		tree.add( two );
+		tree.add( six );
+
+		Spliterator<Integer> split = tree.spliterator();
+		assertEquals( "Failed to report size.", 3, split.getExactSizeIfKnown() );
+		assertTrue( split.hasCharacteristics( Spliterator.SORTED ) );
+		assertTrue( split.hasCharacteristics( Spliterator.DISTINCT ) );
+		assertNull( "Natural ordering should have no comparator.", split.getComparator() );
+
+		int i = 0;
+		for( Integer value : tree )
+		{
+			assertEquals( "For-each iteration is out of order ", new Integer[] { two, four, six }[i++], value );
+		}
+	}
+
+	/**
+	 * Test method for the iterators to throw NoSuchElementException once the
+	 * iteration is finished.
+	 */
+	@Test
+	public void testIterators_Exhausted()
+	{
+		tree.add( one );
+		Iterator<?>[] iterators = { tree.inorderIterator(), tree.preorderIterator(), tree.postorderIterator(),
+				new BSTree<Integer>().inorderIterator() };
+		for( Iterator<?> it : iterators )
+		{
+			while( it.hasNext() )
+			{
+				it.next();
+			}
+			try
+			{
+				it.next();
+				fail( "Iterator failed to throw NoSuchElementException." );
+			}
+			catch( java.util.NoSuchElementException e )
+			{
+				assertTrue( true );
+			}
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link implementations.BSTree#computeIfAbsent(Object, java.util.function.ToIntBiFunction, java.util.function.Function)}
+	 * to add missing elements once and return existing ones without calling the
+	 * factory.
+	 */
+	@Test
+	public void testComputeIfAbsent()
+	{
+		final int[] created = { 0 };
+		BSTree<Integer> balanced = new BSTree<Integer>( true );
+		for( int i = 1; i <= 100; i++ )
+		{
+			Integer value = balanced.computeIfAbsent( String.valueOf( i ), ( k, e ) -> Integer.compare( Integer.parseInt( k ), e ),
+					k -> {
+						created[0]++;
+						return Integer.valueOf( k );
+					} );
+			assertEquals( "Failed to return the added element.", i, (int) value );
+		}
+		Integer existing = balanced.search( 50 ).getElement();
+		Integer found = balanced.computeIfAbsent( "50", ( k, e ) -> Integer.compare( Integer.parseInt( k ), e ), k -> {
+			created[0]++;
+			return Integer.valueOf( k );
+		} );
+
+		assertSame( "Failed to return the existing element.", existing, found );
+		assertEquals( "Factory should only run for missing keys.", 100, created[0] );
+		assertEquals( "Failed to update size correctly.", 100, balanced.size() );
+		assertEquals( "Height of balanced tree should be ", 7, balanced.getHeight() );
+	}
+
+	/**
+	 * Test method for {@link implementations.BSTree#add(Comparable)} and
+	 * {@link implementations.BSTree#computeIfAbsent} on an unbalanced tree, to
+	 * leave the subtree sizes alone when the element is already there.
+	 */
+	@Test
+	public void testUnbalanced_DuplicateKeepsSizes()
+	{
+		int[] values = { 50, 20, 80, 10, 30, 70, 90, 25, 35 };
+		for( int value : values )
+		{
+			assertTrue( tree.add( value ) );
+		}
+		for( int value : values )
+		{
+			assertFalse( "Failed to reject a duplicate.", tree.add( value ) );
+			assertEquals( value, (int) tree.computeIfAbsent( value, ( k, e ) -> Integer.compare( k, e ), k -> -1 ) );
+		}
+		assertEquals( "Failed to keep size.", values.length, tree.size() );
+		assertEquals( "Failed to keep the root's subtree size.", values.length, tree.getRoot().getSize() );
+		assertEquals( "Failed to keep subtree sizes.", 5, tree.search( 20 ).getSize() );
+		for( int i = 0; i < values.length; i++ )
+		{
+			assertEquals( "Failed to rank.", i, tree.rank( tree.select( i ) ) );
+		}
+
+		assertEquals( 60, (int) tree.computeIfAbsent( 60, ( k, e ) -> Integer.compare( k, e ), k -> k ) );
+		assertEquals( "Failed to count the added node.", values.length + 1, tree.getRoot().getSize() );
+		assertEquals( 4, tree.search( 80 ).getSize() );
+		assertEquals( 2, tree.search( 70 ).getSize() );
+	}
+
+	/**
+	 * Test method for
+	 * {@link implementations.BSTree#get(Object, java.util.function.ToIntBiFunction)}
+	 * to find an element by key and return null when it is missing.
+	 */
+	@Test
+	public void testGetByKey()
+	{
+		tree.add( four );
+		tree.add( two );
+		tree.add( six );
+
+		assertEquals( "Failed to return the correct element.", six, tree.get( 66L, ( k, e ) -> Long.compare( k, e ) ) );
+		assertNull( "Failed to return null.", tree.get( 65L, ( k, e ) -> Long.compare( k, e ) ) );
+		try
+		{
+			tree.get( null, ( Long k, Integer e ) -> 0 );
+			fail( "Failed to throw NullPointerException." );
+		}
+		catch( NullPointerException e )
+		{
+			assertTrue( true );
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link implementations.BSTree#fromSorted(java.util.Iterator, int)} to build
+	 * a perfectly balanced tree and reject unsorted input.
+	 */
+	@Test
+	public void testFromSorted()
+	{
+		List<Integer> sorted = new java.util.ArrayList<Integer>();
+		for( int i = 0; i < 1000; i++ )
+		{
+			sorted.add( i * 2 );
+		}
+		BSTree<Integer> built = BSTree.fromSorted( sorted.iterator(), sorted.size() );
+		assertEquals( "Failed to return correct size.", 1000, built.size() );
+		assertEquals( "Height of built tree should be ", 10, built.getHeight() );
+		assertTrue( built.isBalanced() );
+		assertEquals( "Built tree is out of order ", sorted, built.stream().collect( Collectors.toList() ) );
+		assertTrue( built.add( 1 ) );
+		assertEquals( "Failed to return minimum value.", 0, (int) built.removeMin().getElement() );
+
+		try
+		{
+			BSTree.fromSorted( Arrays.asList( one, three, two ).iterator(), 3 );
+			fail( "Failed to throw IllegalArgumentException." );
+		}
+		catch( IllegalArgumentException e )
+		{
+			assertTrue( true );
+		}
+	}
+
+	/**
+	 * Test method for {@link implementations.BSTree#fromSorted(Comparable[])}
+	 * to build the same tree as from an iterator.
+	 */
+	@Test
+	public void testFromSortedArray()
+	{
+		Integer[] sorted = { 1, 3, 5, 7, 9, 11, 13 };
+		BSTree<Integer> built = BSTree.fromSorted( sorted );
+		assertEquals( "Failed to return correct size.", 7, built.size() );
+		assertEquals( "Height of built tree should be ", 3, built.getHeight() );
+		assertEquals( "Root of built tree should be ", Integer.valueOf( 7 ), built.getRoot().getElement() );
+		assertEquals( "Built tree is out of order ", Arrays.asList( sorted ), built.stream().collect( Collectors.toList() ) );
+		assertTrue( BSTree.fromSorted( new Integer[0] ).isEmpty() );
+
+		try
+		{
+			BSTree.fromSorted( new Integer[] { one, one } );
+			fail( "Failed to throw IllegalArgumentException." );
+		}
+		catch( IllegalArgumentException e )
+		{
+			assertTrue( true );
+		}
+	}
+
+	/**
+	 * Test method for {@link implementations.BSTree#rebalance()} to rebuild a
+	 * degenerate tree perfectly balanced and keep it balanced afterwards.
+	 */
+	@Test
+	public void testRebalance()
+	{
+		List<Integer> sorted = new java.util.ArrayList<Integer>();
+		for( int i = 0; i < 1000; i++ )
+		{
+			tree.add( i );
+			sorted.add( i );
+		}
+		assertEquals( 1000, tree.getHeight() );
+		BSTreeNode<Integer> first = tree.search( 0 );
+
+		tree.rebalance();
+		assertTrue( tree.isBalanced() );
+		assertEquals( "Height of rebalanced tree should be ", 10, tree.getHeight() );
+		assertEquals( "Failed to return correct size.", 1000, tree.size() );
+		assertEquals( "Rebalanced tree is out of order ", sorted, tree.stream().collect( Collectors.toList() ) );
+		assertSame( "Failed to keep the nodes.", first, tree.search( 0 ) );
+		assertEquals( "Failed to build the same shape as fromSorted.",
+				collect( BSTree.fromSorted( sorted.iterator(), 1000 ).preorderIterator() ),
+				collect( tree.preorderIterator() ) );
+		assertOrderStatistics( tree );
+
+		for( int i = 1000; i < 2000; i++ )
+		{
+			tree.add( i );
+		}
+		assertTrue( "Failed to stay balanced.", tree.getHeight() <= 15 );
+		assertOrderStatistics( tree );
+
+		BSTree<Integer> empty = new BSTree<Integer>();
+		empty.rebalance();
+		assertTrue( empty.isEmpty() );
+		assertTrue( empty.isBalanced() );
+	}
+
+	/**
+	 * Test method for
+	 * {@link implementations.BSTree#merge(BSTree, BSTree, java.util.function.BinaryOperator)}
+	 * to merge two trees in order and combine shared elements.
+	 */
+	@Test
+	public void testMerge()
+	{
+		tree.add( four );
+		tree.add( two );
+		tree.add( six );
+		BSTree<Integer> other = new BSTree<Integer>( true );
+		other.add( one );
+		other.add( four );
+		other.add( seven );
+
+		final int[] combined = { 0 };
+		BSTree<Integer> merged = BSTree.merge( tree, other, ( a, b ) -> {
+			combined[0]++;
+			return a;
+		} );
+		assertEquals( "Merged tree is out of order ", Arrays.asList( one, two, four, six, seven ),
+				merged.stream().collect( Collectors.toList() ) );
+		assertEquals( "Shared elements should be combined once.", 1, combined[0] );
+		assertEquals( "Height of merged tree should be ", 3, merged.getHeight() );
+		assertEquals( "Merging with an empty tree should keep every element.", 5,
+				BSTree.merge( merged, new BSTree<Integer>(), ( a, b ) -> a ).size() );
+	}
+
+	// checks rank, select and countRange against the in-order listing of the tree
+	private static void assertOrderStatistics( BSTree<Integer> tree )
+	{
+		List<Integer> sorted = tree.stream().collect( Collectors.toList() );
+		for( int i = 0; i < sorted.size(); i++ )
+		{
+			assertEquals( "Failed to select ", sorted.get( i ), tree.select( i ) );
+			assertEquals( "Failed to rank ", i, tree.rank( sorted.get( i ) ) );
+			int below = sorted.get( i ) - 1;
+			assertEquals( "Failed to rank below an element ", tree.contains( below ) ? i - 1 : i, tree.rank( below ) );
+		}
+		if( !sorted.isEmpty() )
+		{
+			assertEquals( "Failed to count every element.", sorted.size(),
+					tree.countRange( sorted.get( 0 ), sorted.get( sorted.size() - 1 ) ) );
+		}
+	}
+
+	/**
+	 * Test method for {@link implementations.BSTree#rank(Comparable)},
+	 * {@link implementations.BSTree#select(int)} and
+	 * {@link implementations.BSTree#countRange(Comparable, Comparable)} on a
+	 * plain tree, including duplicates and removals.
+	 */
+	@Test
+	public void testOrderStatistics()
+	{
+		Integer[] values = { four, two, six, one, three, five, seven };
+		for( Integer value : values )
+		{
+			tree.add( value );
+		}
+		assertFalse( tree.add( three ) );
+		assertOrderStatistics( tree );
+		assertEquals( "Failed to rank below the minimum.", 0, tree.rank( 0 ) );
+		assertEquals( "Failed to rank above the maximum.", 7, tree.rank( 100 ) );
+		assertEquals( "Failed to count range.", 3, tree.countRange( 20, 50 ) );
+		assertEquals( "Failed to count inclusive range.", 3, tree.countRange( two, four ) );
+		assertEquals( "Failed to count an empty range.", 0, tree.countRange( 23, 32 ) );
+		assertEquals( "Failed to count a reversed range.", 0, tree.countRange( six, two ) );
+
+		tree.removeMin();
+		tree.removeMax();
+		assertOrderStatistics( tree );
+		assertEquals( "Failed to select after removal.", two, tree.select( 0 ) );
+		try
+		{
+			tree.select( 5 );
+			fail( "Failed to throw IndexOutOfBoundsException" );
+		}
+		catch( IndexOutOfBoundsException e )
+		{
+			assertTrue( true );
+		}
+	}
+
+	/**
+	 * Test that subtree sizes stay correct through rotations, removals, key
+	 * inserts, fromSorted, merge and serialization.
+	 *
+	 * @throws Exception if serialization fails
+	 */
+	@Test
+	public void testOrderStatistics_Balanced() throws Exception
+	{
+		BSTree<Integer> balanced = new BSTree<Integer>( true );
+		for( int i = 0; i < 200; i++ )
+		{
+			balanced.add( ( i * 37 ) % 200 );
+			balanced.computeIfAbsent( ( i * 53 ) % 300, ( k, e ) -> k.compareTo( e ), k -> k );
+		}
+		assertOrderStatistics( balanced );
+		for( int i = 0; i < 40; i++ )
+		{
+			balanced.removeMin();
+			balanced.removeMax();
+		}
+		assertOrderStatistics( balanced );
+		assertEquals( "Failed to select the middle.", balanced.stream().skip( 50 ).findFirst().get(),
+				balanced.select( 50 ) );
+
+		assertOrderStatistics( BSTree.fromSorted( Arrays.asList( 1, 3, 5, 7, 9, 11 ).iterator(), 6 ) );
+		assertOrderStatistics( BSTree.merge( balanced, BSTree.fromSorted( Arrays.asList( 1, 3, 5 ).iterator(), 3 ),
+				( a, b ) -> a ) );
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try( ObjectOutputStream out = new ObjectOutputStream( bytes ) )
+		{
+			out.writeObject( balanced );
+		}
+		try( ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) )
+		{
+			@SuppressWarnings( "unchecked" )
+			BSTree<Integer> copy = (BSTree<Integer>) in.readObject();
+			assertOrderStatistics( copy );
+		}
+	}
+
+	/**
+	 * Test that ceiling, floor, higher and lower find the nearest elements.
+	 */
+	@Test
+	public void testNearest()
+	{
+		tree.add( four );
+		tree.add( two );
+		tree.add( six );
+		tree.add( one );
+		tree.add( seven );
+		assertEquals( "Failed to find ceiling.", four, tree.ceiling( 40 ) );
+		assertEquals( "Failed to find ceiling.", four, tree.ceiling( four ) );
+		assertEquals( "Failed to find floor.", two, tree.floor( 40 ) );
+		assertEquals( "Failed to find floor.", four, tree.floor( four ) );
+		assertEquals( "Failed to find higher.", six, tree.higher( four ) );
+		assertEquals( "Failed to find lower.", two, tree.lower( four ) );
+		assertEquals( "Failed to find lower.", seven, tree.lower( 100 ) );
+		assertNull( "Failed to return null.", tree.ceiling( 78 ) );
+		assertNull( "Failed to return null.", tree.floor( 10 ) );
+		assertNull( "Failed to return null.", tree.higher( seven ) );
+		assertNull( "Failed to return null.", tree.lower( one ) );
+		assertNull( "Failed to return null.", new BSTree<Integer>().ceiling( one ) );
+	}
+
+	/**
+	 * Test that range iterators start at the first element in range and stop
+	 * before the end, with and without bounds.
+	 */
+	@Test
+	public void testRangeIterator()
+	{
+		BSTree<Integer> balanced = new BSTree<Integer>( true );
+		for( int i = 0; i < 100; i += 2 )
+		{
+			balanced.add( i );
+		}
+		assertEquals( "Failed to iterate a range.", Arrays.asList( 10, 12, 14 ),
+				collect( balanced.rangeIterator( 9, 15 ) ) );
+		assertEquals( "Failed to include from and exclude to.", Arrays.asList( 10, 12 ),
+				collect( balanced.rangeIterator( 10, 14 ) ) );
+		assertEquals( "Failed to start at the smallest.", Arrays.asList( 0, 2 ),
+				collect( balanced.rangeIterator( null, 4 ) ) );
+		assertEquals( "Failed to run to the largest.", Arrays.asList( 96, 98 ),
+				collect( balanced.rangeIterator( 95, null ) ) );
+		assertEquals( "Failed to iterate everything.", 50, collect( balanced.rangeIterator( null, null ) ).size() );
+		assertTrue( "Empty range should have no elements.", collect( balanced.rangeIterator( 11, 12 ) ).isEmpty() );
+		assertTrue( "Reversed range should have no elements.", collect( balanced.rangeIterator( 20, 10 ) ).isEmpty() );
+		assertFalse( new BSTree<Integer>().rangeIterator( null, null ).hasNext() );
+
+		assertEquals( "Failed to iterate a key range.", Arrays.asList( 20, 22 ),
+				collect( balanced.rangeIterator( "20", "24", ( k, e ) -> Integer.parseInt( k ) - e ) ) );
+	}
+
+	/**
+	 * Test that a prefix iterator returns exactly the run of matching strings.
+	 */
+	@Test
+	public void testPrefixIterator()
+	{
+		BSTree<String> words = new BSTree<String>( true );
+		for( String word : new String[] { "car", "cart", "carbon", "ca", "cat", "dog", "care", "bar", "c" } )
+		{
+			words.add( word );
+		}
+		java.util.function.ToIntBiFunction<String, String> prefixOrder = ( prefix, word ) -> word
+				.startsWith( prefix ) ? 0 : prefix.compareTo( word );
+		assertEquals( "Failed to find prefix.", Arrays.asList( "car", "carbon", "care", "cart" ),
+				collect( words.prefixIterator( "car", prefixOrder ) ) );
+		assertEquals( "Failed to find prefix.", Arrays.asList( "c", "ca", "car", "carbon", "care", "cart", "cat" ),
+				collect( words.prefixIterator( "c", prefixOrder ) ) );
+		assertEquals( "Failed to match everything.", 9, collect( words.prefixIterator( "", prefixOrder ) ).size() );
+		assertTrue( "Failed to match nothing.", collect( words.prefixIterator( "cars", prefixOrder ) ).isEmpty() );
+		assertTrue( "Failed to match nothing.", collect( words.prefixIterator( "z", prefixOrder ) ).isEmpty() );
+	}
+
+	private static <E> List<E> collect( Iterator<E> it )
+	{
+		List<E> list = new java.util.ArrayList<E>();
+		while( it.hasNext() )
+		{
+			list.add( it.next() );
+		}
+		return list;
+	}
 }
@@ -0,0 +1,219 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import appDomain.WordTracker.WordEntry;
+import implementations.ConcurrentBSTree;
+import utilities.Iterator;
+
+/**
+ * Class Description: Stress tests for {@link implementations.ConcurrentBSTree}
+ * with readers and writers running at the same time.
+ */
+public class ConcurrentBSTreeTest
+{
+	private static final int THREADS = 4;
+
+	private ExecutorService pool;
+
+	/**
+	 * Starts the threads shared by the readers and writers of each test.
+	 */
+	@Before
+	public void setUp()
+	{
+		pool = Executors.newFixedThreadPool( THREADS * 2 );
+	}
+
+	/**
+	 * Stops the threads after each test.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	@After
+	public void tearDown() throws InterruptedException
+	{
+		pool.shutdownNow();
+		pool.awaitTermination( 10, TimeUnit.SECONDS );
+	}
+
+	/**
+	 * Test that the tree behaves like a BSTree when used from one thread.
+	 */
+	@Test
+	public void testSingleThread()
+	{
+		ConcurrentBSTree<Integer> tree = new ConcurrentBSTree<Integer>();
+		assertTrue( tree.isEmpty() );
+		assertNull( tree.search( 1 ) );
+		for( int i = 0; i < 100; i++ )
+		{
+			assertTrue( tree.add( ( i * 37 ) % 100 ) );
+		}
+		assertEquals( "Failed to return size.", 100, tree.size() );
+		assertTrue( "Failed to keep balance.", tree.getHeight() <= 8 );
+		assertTrue( tree.contains( 42 ) );
+		assertEquals( "Failed to rank.", 42, tree.rank( 42 ) );
+		assertEquals( "Failed to select.", Integer.valueOf( 42 ), tree.select( 42 ) );
+		assertEquals( "Failed to count range.", 11, tree.countRange( 10, 20 ) );
+		assertEquals( "Failed to find ceiling.", Integer.valueOf( 99 ), tree.ceiling( 99 ) );
+		assertEquals( Integer.valueOf( 0 ), tree.removeMin().getElement() );
+		assertEquals( Integer.valueOf( 99 ), tree.removeMax().getElement() );
+
+		Iterator<Integer> it = tree.inorderIterator();
+		int expected = 1;
+		while( it.hasNext() )
+		{
+			assertEquals( "Failed to iterate in order.", Integer.valueOf( expected++ ), it.next() );
+		}
+		assertEquals( 99, expected );
+		tree.clear();
+		assertTrue( tree.isEmpty() );
+	}
+
+	/**
+	 * Test that an iterator keeps the elements it started with while the tree
+	 * changes.
+	 */
+	@Test
+	public void testIteratorIsSnapshot()
+	{
+		ConcurrentBSTree<Integer> tree = new ConcurrentBSTree<Integer>();
+		tree.add( 1 );
+		tree.add( 2 );
+		Iterator<Integer> it = tree.inorderIterator();
+		tree.add( 3 );
+		tree.removeMin();
+		assertEquals( Integer.valueOf( 1 ), it.next() );
+		assertEquals( Integer.valueOf( 2 ), it.next() );
+		assertFalse( "Iterator should not see later adds.", it.hasNext() );
+	}
+
+	/**
+	 * Test that readers always find every element whose add has finished while
+	 * a writer keeps rotating the tree.
+	 *
+	 * @throws Exception if a reader or writer fails
+	 */
+	@Test
+	public void testReadersDuringWrites() throws Exception
+	{
+		ConcurrentBSTree<Integer> tree = new ConcurrentBSTree<Integer>();
+		int count = 20000;
+		int[] order = new int[count];
+		for( int i = 0; i < count; i++ )
+		{
+			order[i] = (int) ( ( i * 7919L ) % count );
+		}
+		AtomicInteger published = new AtomicInteger( -1 );
+		AtomicBoolean done = new AtomicBoolean();
+
+		List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+		for( int r = 0; r < THREADS; r++ )
+		{
+			int seed = r;
+			readers.add( pool.submit( () -> {
+				int reads = 0;
+				int next = seed;
+				while( !done.get() )
+				{
+					int last = published.get();
+					if( last < 0 )
+					{
+						continue;
+					}
+					next = ( next * 1103515245 + 12345 ) & 0x7FFFFFFF;
+					int value = order[next % ( last + 1 )];
+					assertTrue( "Failed to find " + value, tree.contains( value ) );
+					assertNotNull( tree.get( value, ( k, e ) -> Integer.compare( k, e ) ) );
+					reads++;
+				}
+				return reads;
+			} ) );
+		}
+		for( int i = 0; i < count; i++ )
+		{
+			tree.add( order[i] );
+			published.set( i );
+		}
+		done.set( true );
+		for( Future<Integer> reader : readers )
+		{
+			reader.get( 60, TimeUnit.SECONDS );
+		}
+		assertEquals( "Failed to add every element.", count, tree.size() );
+		for( int i = 0; i < count; i += 97 )
+		{
+			assertEquals( "Failed to keep order.", Integer.valueOf( i ), tree.select( i ) );
+		}
+	}
+
+	/**
+	 * Test that no occurrence is lost when several threads add lines to the
+	 * same words at once, as a shared ingest would.
+	 *
+	 * @throws Exception if a writer fails
+	 */
+	@Test
+	public void testConcurrentIngest() throws Exception
+	{
+		ConcurrentBSTree<WordEntry> tree = new ConcurrentBSTree<WordEntry>();
+		int words = 500;
+		int lines = 40;
+		List<Callable<Void>> writers = new ArrayList<Callable<Void>>();
+		for( int t = 0; t < THREADS * 2; t++ )
+		{
+			String file = "concurrentTest-" + ( t % 3 ) + ".txt";
+			int offset = t;
+			writers.add( () -> {
+				for( int line = 1; line <= lines; line++ )
+				{
+					for( int w = 0; w < words; w++ )
+					{
+						String word = "w" + ( ( w + offset * 31 ) % words );
+						int at = line;
+						tree.update( word, WordEntry.KEY_ORDER, WordEntry::new, entry -> entry.add( file, at ) );
+					}
+				}
+				return null;
+			} );
+		}
+		for( Future<Void> writer : pool.invokeAll( writers ) )
+		{
+			writer.get();
+		}
+
+		assertEquals( "Failed to add each word once.", words, tree.size() );
+		assertEquals( "Failed to view an entry.", Integer.valueOf( THREADS * 2 * lines ),
+				tree.view( "W7", WordEntry.KEY_ORDER, WordEntry::total ) );
+		assertNull( tree.view( "missing", WordEntry.KEY_ORDER, WordEntry::total ) );
+		Iterator<WordEntry> it = tree.inorderIterator();
+		String previous = null;
+		while( it.hasNext() )
+		{
+			WordEntry entry = it.next();
+			assertEquals( "Lost occurrences of " + entry.getWord(), THREADS * 2 * lines, entry.total() );
+			int[] first = entry.getLines( "concurrentTest-0.txt" ).toArray();
+			for( int i = 1; i < first.length; i++ )
+			{
+				assertTrue( "Failed to keep lines sorted.", first[i - 1] <= first[i] );
+			}
+			assertTrue( "Failed to keep order.", previous == null || previous.compareToIgnoreCase( entry.getWord() ) < 0 );
+			previous = entry.getWord();
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import appDomain.FileTable;
+import appDomain.WordTracker.WordEntry;
+
+/**
+ * Class Description: Tests for the file name ids handed out by
+ * {@link appDomain.FileTable}.
+ */
+public class FileTableTest
+{
+	/**
+	 * Test that a name keeps its id and that ids resolve back to names.
+	 */
+	@Test
+	public void testIdOf()
+	{
+		FileTable table = FileTable.shared();
+		int zebra = table.idOf( "fileTableTest-zebra.txt" );
+		int apple = table.idOf( "fileTableTest-apple.txt" );
+		assertTrue( "Failed to give distinct ids.", zebra != apple );
+		assertEquals( "Failed to keep id.", zebra, table.idOf( "fileTableTest-zebra.txt" ) );
+		assertEquals( "Failed to find id.", apple, table.find( "fileTableTest-apple.txt" ) );
+		assertEquals( "Failed to return -1.", -1, table.find( "fileTableTest-missing.txt" ) );
+		assertEquals( "Failed to resolve name.", "fileTableTest-zebra.txt", table.nameOf( zebra ) );
+		assertEquals( "fileTableTest-apple.txt", table.names()[apple] );
+	}
+
+	/**
+	 * Test that ranks follow name order rather than id order.
+	 */
+	@Test
+	public void testRanks()
+	{
+		FileTable table = FileTable.shared();
+		int c = table.idOf( "fileTableTest-c.txt" );
+		int a = table.idOf( "fileTableTest-a.txt" );
+		int b = table.idOf( "fileTableTest-b.txt" );
+		int[] rank = table.ranks();
+		assertEquals( "Failed to cover every id.", table.size(), rank.length );
+		assertTrue( "Failed to rank by name.", rank[a] < rank[b] && rank[b] < rank[c] );
+	}
+
+	/**
+	 * Test that an entry lists its files by id and finds lines by id or name.
+	 */
+	@Test
+	public void testEntryFiles()
+	{
+		WordEntry entry = new WordEntry( "kitty" );
+		entry.add( "fileTableTest-y.txt", 4 );
+		entry.add( "fileTableTest-x.txt", 2 );
+		entry.add( "fileTableTest-y.txt", 9 );
+		int x = FileTable.shared().find( "fileTableTest-x.txt" );
+		int y = FileTable.shared().find( "fileTableTest-y.txt" );
+
+		assertEquals( "Failed to count files.", 2, entry.fileCount() );
+		assertTrue( "Files are out of id order.", entry.fileId( 0 ) < entry.fileId( 1 ) );
+		assertArrayEquals( new int[] { 4, 9 }, entry.getLines( y ).toArray() );
+		assertArrayEquals( new int[] { 2 }, entry.getLines( "fileTableTest-x.txt" ).toArray() );
+		assertSame( entry.getLines( x ), entry.lines( entry.fileId( 0 ) == x ? 0 : 1 ) );
+		assertEquals( "Failed to return empty lines.", 0, entry.getLines( "fileTableTest-none.txt" ).size() );
+	}
+}
@@ -0,0 +1,90 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import appDomain.WordTracker.WordEntry;
+import implementations.BSTree;
+import implementations.HashIndex;
+import utilities.Iterator;
+
+/**
+ * Class Description: Tests for {@link implementations.HashIndex} keyed by
+ * words, as a scan uses it.
+ */
+public class HashIndexTest
+{
+	private static HashIndex<CharSequence, WordEntry> newIndex()
+	{
+		return new HashIndex<CharSequence, WordEntry>( WordEntry.KEY_HASH, WordEntry.KEY_ORDER );
+	}
+
+	/**
+	 * Test that words differing only in case find the same entry.
+	 */
+	@Test
+	public void testIgnoresCase()
+	{
+		HashIndex<CharSequence, WordEntry> index = newIndex();
+		assertTrue( index.isEmpty() );
+		assertNull( index.get( "kitty" ) );
+		WordEntry kitty = index.computeIfAbsent( "Kitty", key -> new WordEntry( key.toString() ) );
+		assertSame( "Failed to find the entry.", kitty, index.computeIfAbsent( "kITTY", key -> new WordEntry( "x" ) ) );
+		assertSame( kitty, index.get( new StringBuilder( "KITTY" ) ) );
+		assertEquals( "Failed to keep the first spelling.", "Kitty", kitty.getWord() );
+		assertEquals( 1, index.size() );
+		assertEquals( "Failed to fold non-ASCII letters.", WordEntry.KEY_HASH.applyAsInt( "\u00c9t\u00c9" ),
+				WordEntry.KEY_HASH.applyAsInt( "\u00e9t\u00e9" ) );
+		try
+		{
+			index.computeIfAbsent( "cat", key -> null );
+			fail( "Failed to reject a null element." );
+		}
+		catch( NullPointerException e )
+		{
+			// expected
+		}
+		assertEquals( 1, index.size() );
+	}
+
+	/**
+	 * Test that the index keeps every word as it grows and sorts them into a
+	 * balanced tree.
+	 */
+	@Test
+	public void testGrowAndToTree()
+	{
+		HashIndex<CharSequence, WordEntry> index = newIndex();
+		for( int i = 0; i < 5000; i++ )
+		{
+			index.computeIfAbsent( "w" + ( i * 7919 ) % 5000, key -> new WordEntry( key.toString() ) ).add( 1, i + 1 );
+		}
+		index.computeIfAbsent( "W42", key -> new WordEntry( key.toString() ) ).add( 1, 9999 );
+		assertEquals( "Failed to keep every word.", 5000, index.size() );
+		assertEquals( 2, index.get( "w42" ).total() );
+
+		Set<String> seen = new HashSet<String>();
+		for( WordEntry entry : index )
+		{
+			assertTrue( "Failed to iterate each word once.", seen.add( entry.getWord() ) );
+		}
+		assertEquals( 5000, seen.size() );
+
+		BSTree<WordEntry> tree = index.toTree();
+		assertEquals( "Failed to build the tree.", 5000, tree.size() );
+		assertTrue( "Failed to balance the tree.", tree.getHeight() <= 13 );
+		Iterator<WordEntry> it = tree.inorderIterator();
+		WordEntry previous = it.next();
+		while( it.hasNext() )
+		{
+			WordEntry next = it.next();
+			assertTrue( "Failed to sort.", previous.compareTo( next ) < 0 );
+			previous = next;
+		}
+		assertSame( index.get( "w4999" ), tree.get( "W4999", WordEntry.KEY_ORDER ) );
+	}
+}
@@ -0,0 +1,181 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+import appDomain.Metrics;
+import appDomain.RepositoryFile;
+import appDomain.RepositoryIndex;
+import appDomain.WordTracker.WordEntry;
+import implementations.BSTree;
+
+/**
+ * Class Description: Tests for the counters, histograms and JMX view of
+ * {@link appDomain.Metrics}.
+ */
+public class MetricsTest
+{
+	@After
+	public void tearDown()
+	{
+		Metrics.shared().reset();
+	}
+
+	/**
+	 * Test that percentiles are read to within a quarter of their octave and
+	 * never past the largest value.
+	 */
+	@Test
+	public void testHistogram()
+	{
+		Metrics.Histogram histogram = new Metrics.Histogram();
+		assertEquals( "Failed to return 0 when empty.", 0, histogram.percentile( 0.5 ) );
+		for( int i = 1; i <= 1000; i++ )
+		{
+			histogram.record( i * 1000L );
+		}
+		assertEquals( 1000, histogram.count() );
+		assertEquals( 500500000L, histogram.total() );
+		assertEquals( 1000000L, histogram.max() );
+		long median = histogram.percentile( 0.5 );
+		assertTrue( "Failed to estimate median: " + median, median >= 500000 && median <= 500000 * 5 / 4 );
+		long p99 = histogram.percentile( 0.99 );
+		assertTrue( "Failed to estimate p99: " + p99, p99 >= 990000 && p99 <= 1000000 );
+		assertEquals( "Failed to cap at the maximum.", 1000000L, histogram.percentile( 1.0 ) );
+
+		Metrics.Histogram small = new Metrics.Histogram();
+		small.record( 3 );
+		small.record( 5 );
+		small.record( -1 );
+		assertEquals( "Failed to keep small values exact.", 3, small.percentile( 0.5 ) );
+		assertEquals( 5, small.percentile( 1.0 ) );
+		small.record( Long.MAX_VALUE );
+		assertEquals( Long.MAX_VALUE, small.percentile( 1.0 ) );
+	}
+
+	/**
+	 * Test that nothing is recorded until metrics are enabled.
+	 */
+	@Test
+	public void testDisabled()
+	{
+		Metrics metrics = Metrics.shared();
+		if( metrics.isEnabled() )
+		{
+			// another test already turned them on; they cannot be turned off again
+			return;
+		}
+		long began = metrics.begin();
+		assertEquals( "Failed to skip the clock.", 0, began );
+		metrics.end( Metrics.Phase.SCAN, began );
+		metrics.scanned( 10, 40 );
+		metrics.written( 100 );
+		assertEquals( 0, metrics.histogram( Metrics.Phase.SCAN ).count() );
+		assertEquals( 0, metrics.getTokens() );
+		assertEquals( 0, metrics.getBytesWritten() );
+	}
+
+	/**
+	 * Test that a counting order counts the comparisons a tree makes.
+	 */
+	@Test
+	public void testCountingOrder()
+	{
+		BSTree<WordEntry> tree = BSTree.fromSorted( new WordEntry[] { new WordEntry( "apple" ), new WordEntry( "kitty" ),
+				new WordEntry( "zebra" ) } );
+		Metrics.CountingOrder<CharSequence, WordEntry> order = Metrics.counting( WordEntry.KEY_ORDER );
+		assertNotNull( tree.get( "Kitty", order ) );
+		assertEquals( "Failed to count the root comparison.", 1, order.count() );
+		assertNotNull( tree.get( "zebra", order ) );
+		assertEquals( "Failed to count the descent.", 3, order.count() );
+	}
+
+	/**
+	 * Test that an index records the bytes of every entry it decodes once,
+	 * when it is closed, rather than once per entry.
+	 *
+	 * @throws Exception if the repository cannot be written or mapped
+	 */
+	@Test
+	public void testIndexReadsRecordedOnClose() throws Exception
+	{
+		BSTree<WordEntry> tree = BSTree.fromSorted( new WordEntry[] { new WordEntry( "apple" ), new WordEntry( "kitty" ),
+				new WordEntry( "zebra" ) } );
+		File file = File.createTempFile( "metricsTest", ".dat" );
+		try
+		{
+			RepositoryFile.write( tree, file );
+			Metrics metrics = Metrics.shared();
+			metrics.enable();
+			metrics.reset();
+			try( RepositoryIndex index = RepositoryIndex.open( file ) )
+			{
+				assertNotNull( index.get( "kitty" ) );
+				assertNotNull( index.get( "zebra" ) );
+				for( WordEntry entry : index )
+				{
+					assertNotNull( entry );
+				}
+				assertEquals( "Failed to wait for the end of the query.", 0, metrics.getBytesRead() );
+			}
+			assertTrue( "Failed to record the entries read.", metrics.getBytesRead() > 0 );
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	/**
+	 * Test that enabled metrics show up in the summary, the JSON and over JMX.
+	 *
+	 * @throws Exception if the MBean cannot be read
+	 */
+	@Test
+	public void testReport() throws Exception
+	{
+		Metrics metrics = Metrics.shared();
+		metrics.enable();
+		metrics.reset();
+		metrics.scanned( 1000, 9000 );
+		metrics.read( 64 );
+		metrics.written( 128 );
+		metrics.tree( 400, 9 );
+		metrics.histogram( Metrics.Phase.SCAN ).record( 2000000 );
+
+		assertEquals( 9.0, metrics.getComparisonsPerLookup(), 1e-9 );
+		assertEquals( 500000.0, metrics.getTokensPerSecond(), 1e-6 );
+		String summary = metrics.summary();
+		assertTrue( summary, summary.contains( "Words read: 1000" ) );
+		assertTrue( summary, summary.contains( "Tree: 400 words, height 9" ) );
+		assertTrue( summary, summary.contains( "scan" ) );
+		assertFalse( "Failed to skip phases that did not run.", summary.contains( "report" ) );
+		String json = metrics.toJson();
+		assertTrue( json, json.startsWith( "{\"tokens\":1000," ) );
+		assertTrue( json, json.contains( "\"phases\":{\"scan\":{\"count\":1,\"totalMs\":2.000," ) );
+		metrics.tree( 400, -1 );
+		assertTrue( "Failed to mark the height unknown.", metrics.summary().contains( "Tree: 400 words, height unknown" ) );
+		assertTrue( "Failed to write an unknown height as null.", metrics.toJson().contains( "\"treeHeight\":null" ) );
+		metrics.tree( 400, 9 );
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName( Metrics.OBJECT_NAME );
+		assertEquals( "Failed to publish over JMX.", 1000L, server.getAttribute( name, "Tokens" ) );
+		assertEquals( 128L, server.getAttribute( name, "BytesWritten" ) );
+		Map<String, Double> phases = metrics.getPhaseMillis();
+		assertEquals( 2.0, phases.get( "scan.total" ), 1e-9 );
+		assertNotNull( "Failed to publish the phases.", server.getAttribute( name, "PhaseMillis" ) );
+
+		server.invoke( name, "reset", null, null );
+		assertEquals( 0, metrics.getTokens() );
+	}
+}
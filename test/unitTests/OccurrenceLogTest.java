@@ -0,0 +1,207 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import appDomain.OccurrenceLog;
+import appDomain.WordTracker.WordEntry;
+import implementations.BSTree;
+
+/**
+ * Class Description: Replay, sequence numbering and damage handling tests for
+ * the append-only log written by {@link appDomain.OccurrenceLog}.
+ */
+public class OccurrenceLogTest
+{
+	private File file;
+
+	/**
+	 * Picks a log file name that does not exist yet.
+	 *
+	 * @throws Exception if the temporary file cannot be created
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		file = File.createTempFile( "repository", ".log" );
+		file.delete();
+	}
+
+	/**
+	 * Removes the log after each test.
+	 */
+	@After
+	public void tearDown()
+	{
+		file.delete();
+	}
+
+	private static BSTree<WordEntry> run( String fileName, String... words )
+	{
+		BSTree<WordEntry> tree = new BSTree<WordEntry>( true );
+		for( int i = 0; i < words.length; i++ )
+		{
+			WordEntry entry = tree.computeIfAbsent( words[i], WordEntry.KEY_ORDER, WordEntry::new );
+			entry.add( fileName, i + 1 );
+		}
+		return tree;
+	}
+
+	private static OccurrenceLog logWithRuns( File file ) throws IOException
+	{
+		OccurrenceLog log = new OccurrenceLog( file );
+		log.replay( 0 );
+		assertEquals( "Failed to number the first record.", 1, log.append( run( "a.txt", "kitty", "hello", "kitty" ) ) );
+		assertEquals( "Failed to number the second record.", 2, log.append( run( "b.txt", "hello", "zebra" ) ) );
+		return log;
+	}
+
+	/**
+	 * Test that a word longer than 64 KiB survives an append and replay.
+	 *
+	 * @throws IOException if the log cannot be written or read
+	 */
+	@Test
+	public void testLongWord() throws IOException
+	{
+		char[] letters = new char[70000];
+		Arrays.fill( letters, 'z' );
+		String word = new String( letters );
+		OccurrenceLog log = new OccurrenceLog( file );
+		log.replay( 0 );
+		log.append( run( "long.txt", word, "kitty" ) );
+
+		BSTree<WordEntry> words = new OccurrenceLog( file ).replay( 0 );
+		assertEquals( "Failed to replay the long word.", word, words.get( word, WordEntry.KEY_ORDER ).getWord() );
+		assertEquals( 2, words.size() );
+	}
+
+	/**
+	 * Test that replaying merges every record in order.
+	 *
+	 * @throws IOException if the log cannot be written or read
+	 */
+	@Test
+	public void testReplay() throws IOException
+	{
+		logWithRuns( file );
+		OccurrenceLog log = new OccurrenceLog( file );
+		BSTree<WordEntry> words = log.replay( 0 );
+
+		assertEquals( "Failed to replay every word.", 3, words.size() );
+		assertEquals( "Failed to return last sequence.", 2, log.getLastSequence() );
+		WordEntry hello = words.get( "hello", WordEntry.KEY_ORDER );
+		assertArrayEquals( new int[] { 2 }, hello.getLines( "a.txt" ).toArray() );
+		assertArrayEquals( new int[] { 1 }, hello.getLines( "b.txt" ).toArray() );
+		assertArrayEquals( new int[] { 1, 3 }, words.get( "kitty", WordEntry.KEY_ORDER ).getLines( "a.txt" ).toArray() );
+		assertEquals( 0, log.getDiscardedBytes() );
+	}
+
+	/**
+	 * Test that records already in the repository are skipped and that numbering
+	 * carries on after a clear.
+	 *
+	 * @throws IOException if the log cannot be written or read
+	 */
+	@Test
+	public void testSkipsAppliedRecords() throws IOException
+	{
+		logWithRuns( file );
+		OccurrenceLog log = new OccurrenceLog( file );
+		BSTree<WordEntry> words = log.replay( 1 );
+		assertEquals( "Failed to skip the applied record.", 2, words.size() );
+		assertNull( words.get( "kitty", WordEntry.KEY_ORDER ) );
+
+		assertTrue( log.replay( 2 ).isEmpty() );
+		log.clear();
+		assertFalse( file.exists() );
+		assertEquals( "Failed to carry on numbering.", 3, log.append( run( "c.txt", "nice" ) ) );
+	}
+
+	/**
+	 * Test that trimming drops the records the repository includes and keeps
+	 * the newer ones.
+	 *
+	 * @throws IOException if the log cannot be written or read
+	 */
+	@Test
+	public void testTrim() throws IOException
+	{
+		OccurrenceLog log = logWithRuns( file );
+		assertEquals( 3, log.append( run( "c.txt", "nice", "kitty" ) ) );
+		log.trim( 2 );
+		assertFalse( "Failed to remove the temporary file.", new File( file.getPath() + ".tmp" ).exists() );
+
+		OccurrenceLog reopened = new OccurrenceLog( file );
+		BSTree<WordEntry> words = reopened.replay( 0 );
+		assertEquals( "Failed to keep only the newer record.", 2, words.size() );
+		assertEquals( 1, words.get( "kitty", WordEntry.KEY_ORDER ).total() );
+		assertEquals( "Failed to keep the last sequence.", 3, reopened.getLastSequence() );
+		assertEquals( "Failed to keep numbering after a trim.", 4, reopened.append( run( "d.txt", "zebra" ) ) );
+
+		reopened.trim( 1 );
+		assertEquals( "Failed to leave newer records alone.", 3, new OccurrenceLog( file ).replay( 0 ).size() );
+		reopened.trim( 4 );
+		assertFalse( "Failed to delete a log with nothing left.", file.exists() );
+	}
+
+	/**
+	 * Test that a record cut short at the end of the log is dropped and cut off.
+	 *
+	 * @throws IOException if the log cannot be written or read
+	 */
+	@Test
+	public void testTornTail() throws IOException
+	{
+		logWithRuns( file );
+		long length = file.length();
+		try( RandomAccessFile raf = new RandomAccessFile( file, "rw" ) )
+		{
+			raf.setLength( length - 3 );
+		}
+
+		OccurrenceLog log = new OccurrenceLog( file );
+		BSTree<WordEntry> words = log.replay( 0 );
+		assertEquals( "Failed to keep the complete record.", 2, words.size() );
+		assertEquals( 1, log.getLastSequence() );
+		assertTrue( "Failed to cut off the torn record.", log.getDiscardedBytes() > 0 );
+		assertEquals( length - 3 - log.getDiscardedBytes(), file.length() );
+		assertEquals( "Failed to reuse the dropped number.", 2, log.append( run( "b.txt", "zebra" ) ) );
+	}
+
+	/**
+	 * Test that a damaged record followed by another record is reported.
+	 *
+	 * @throws IOException if the log cannot be written
+	 */
+	@Test
+	public void testDamageDetected() throws IOException
+	{
+		logWithRuns( file );
+		try( RandomAccessFile raf = new RandomAccessFile( file, "rw" ) )
+		{
+			raf.seek( 30 );
+			int b = raf.read();
+			raf.seek( 30 );
+			raf.write( b ^ 0x01 );
+		}
+		long length = file.length();
+		try
+		{
+			new OccurrenceLog( file ).replay( 0 );
+			fail( "Failed to detect a damaged record." );
+		}
+		catch( IOException e )
+		{
+			assertEquals( "Damaged log should not be cut.", length, file.length() );
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import appDomain.WordTracker.WordEntry;
+import implementations.BSTreeNode;
+import implementations.PersistentBSTree;
+import utilities.Iterator;
+
+/**
+ * Class Description: Tests for the path-copying
+ * {@link implementations.PersistentBSTree} and its snapshots.
+ */
+public class PersistentBSTreeTest
+{
+	/**
+	 * Checks the order, heights and subtree sizes of every node below node.
+	 *
+	 * @return the height of node
+	 */
+	private static int assertAvl( BSTreeNode<Integer> node, Integer low, Integer high )
+	{
+		if( node == null )
+		{
+			return 0;
+		}
+		Integer value = node.getElement();
+		assertTrue( "Failed to keep order.", ( low == null || low < value ) && ( high == null || value < high ) );
+		int left = assertAvl( node.getLeft(), low, value );
+		int right = assertAvl( node.getRight(), value, high );
+		assertTrue( "Failed to keep balance.", Math.abs( left - right ) <= 1 );
+		assertEquals( "Failed to keep height.", 1 + Math.max( left, right ), node.getHeight() );
+		int size = 1 + ( node.getLeft() == null ? 0 : node.getLeft().getSize() )
+				+ ( node.getRight() == null ? 0 : node.getRight().getSize() );
+		assertEquals( "Failed to keep size.", size, node.getSize() );
+		return node.getHeight();
+	}
+
+	private static String contents( PersistentBSTree<Integer> tree )
+	{
+		StringBuilder sb = new StringBuilder();
+		Iterator<Integer> it = tree.inorderIterator();
+		while( it.hasNext() )
+		{
+			sb.append( it.next() ).append( ' ' );
+		}
+		return sb.toString().trim();
+	}
+
+	/**
+	 * Test that adds and removes keep the tree a valid AVL tree.
+	 */
+	@Test
+	public void testBalance()
+	{
+		PersistentBSTree<Integer> tree = new PersistentBSTree<Integer>();
+		assertTrue( tree.isEmpty() );
+		assertNull( tree.removeMin() );
+		for( int i = 0; i < 1000; i++ )
+		{
+			assertTrue( "Failed to add.", tree.add( i ) );
+		}
+		assertFalse( "Failed to reject a duplicate.", tree.add( 500 ) );
+		assertEquals( "Failed to return size.", 1000, tree.size() );
+		assertAvl( tree.getRoot(), null, null );
+		assertTrue( "Failed to keep height low.", tree.getHeight() <= 14 );
+
+		for( int i = 0; i < 300; i++ )
+		{
+			assertEquals( Integer.valueOf( i ), tree.removeMin().getElement() );
+			assertEquals( Integer.valueOf( 999 - i ), tree.removeMax().getElement() );
+		}
+		assertAvl( tree.getRoot(), null, null );
+		assertEquals( "Failed to remove.", 400, tree.size() );
+		assertEquals( "Failed to rank.", 0, tree.rank( 300 ) );
+		assertEquals( "Failed to select.", Integer.valueOf( 350 ), tree.select( 50 ) );
+		assertEquals( "Failed to count range.", 11, tree.countRange( 340, 350 ) );
+		assertEquals( "Failed to find ceiling.", Integer.valueOf( 300 ), tree.ceiling( 5 ) );
+		assertTrue( tree.contains( 699 ) );
+		assertFalse( tree.contains( 700 ) );
+	}
+
+	/**
+	 * Test that a snapshot keeps its elements while the tree changes, and the
+	 * tree keeps its elements while the snapshot changes.
+	 */
+	@Test
+	public void testSnapshot()
+	{
+		PersistentBSTree<Integer> tree = PersistentBSTree.fromSorted( Arrays.asList( 1, 2, 3, 4, 5 ).iterator(), 5 );
+		PersistentBSTree<Integer> snapshot = tree.snapshot();
+		Iterator<Integer> walk = tree.inorderIterator();
+
+		tree.add( 6 );
+		tree.removeMin();
+		snapshot.add( 0 );
+		assertEquals( "Snapshot should not see changes.", "0 1 2 3 4 5", contents( snapshot ) );
+		assertEquals( "Tree should not see snapshot changes.", "2 3 4 5 6", contents( tree ) );
+
+		StringBuilder walked = new StringBuilder();
+		while( walk.hasNext() )
+		{
+			walked.append( walk.next() ).append( ' ' );
+		}
+		assertEquals( "Iterator should walk the tree as it was.", "1 2 3 4 5 ", walked.toString() );
+		tree.clear();
+		assertTrue( tree.isEmpty() );
+		assertEquals( 6, snapshot.size() );
+	}
+
+	/**
+	 * Test that putAll combines equal elements and publishes the batch as a
+	 * whole.
+	 */
+	@Test
+	public void testPutAll()
+	{
+		PersistentBSTree<Integer> tree = new PersistentBSTree<Integer>();
+		tree.putAll( Arrays.asList( 5, 1, 9 ), ( a, b ) -> a );
+		PersistentBSTree<Integer> before = tree.snapshot();
+		tree.putAll( Arrays.asList( 1, 2, 3, 9 ), ( a, b ) -> a );
+		assertEquals( "Failed to put all.", "1 2 3 5 9", contents( tree ) );
+		assertEquals( "Snapshot should not see the batch.", "1 5 9", contents( before ) );
+		assertAvl( tree.getRoot(), null, null );
+		assertEquals( "Failed to compute.", Integer.valueOf( 7 ),
+				tree.computeIfAbsent( "7", ( k, e ) -> Integer.parseInt( k ) - e, Integer::parseInt ) );
+		assertEquals( 6, tree.size() );
+	}
+
+	/**
+	 * Test that merging a run of words into a resident tree leaves the entries
+	 * held by an earlier snapshot unchanged.
+	 */
+	@Test
+	public void testWordEntriesCopiedOnWrite()
+	{
+		WordEntry kitty = new WordEntry( "kitty" );
+		kitty.add( "persistentTest-a.txt", 1 );
+		PersistentBSTree<WordEntry> tree = new PersistentBSTree<WordEntry>();
+		tree.add( kitty );
+		PersistentBSTree<WordEntry> snapshot = tree.snapshot();
+
+		WordEntry more = new WordEntry( "Kitty" );
+		more.add( "persistentTest-a.txt", 7 );
+		more.add( "persistentTest-b.txt", 3 );
+		tree.putAll( Arrays.asList( more ), WordEntry::union );
+
+		WordEntry merged = tree.get( "kitty", WordEntry.KEY_ORDER );
+		assertEquals( "Failed to merge.", 3, merged.total() );
+		assertArrayEquals( new int[] { 1, 7 }, merged.getLines( "persistentTest-a.txt" ).toArray() );
+		assertSame( "Snapshot should keep the old entry.", kitty, snapshot.get( "kitty", WordEntry.KEY_ORDER ) );
+		assertEquals( "Old entry should not change.", 1, kitty.total() );
+		assertArrayEquals( new int[] { 1 }, kitty.getLines( "persistentTest-a.txt" ).toArray() );
+	}
+
+	/**
+	 * Test that a tree survives serialization.
+	 *
+	 * @throws Exception if serialization fails
+	 */
+	@Test
+	public void testSerialization() throws Exception
+	{
+		PersistentBSTree<Integer> tree = new PersistentBSTree<Integer>();
+		for( int i = 0; i < 100; i++ )
+		{
+			tree.add( ( i * 37 ) % 100 );
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try( ObjectOutputStream out = new ObjectOutputStream( bytes ) )
+		{
+			out.writeObject( tree );
+		}
+		try( ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) )
+		{
+			@SuppressWarnings( "unchecked" )
+			PersistentBSTree<Integer> copy = (PersistentBSTree<Integer>) in.readObject();
+			assertEquals( "Failed to restore.", contents( tree ), contents( copy ) );
+			assertAvl( copy.getRoot(), null, null );
+		}
+	}
+}
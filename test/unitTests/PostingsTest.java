@@ -0,0 +1,126 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.PrimitiveIterator;
+
+import org.junit.Test;
+
+import appDomain.Postings;
+import appDomain.WordTracker.WordEntry;
+
+/**
+ * Class Description: Tests for the sorted primitive line lists kept by
+ * {@link appDomain.WordTracker.WordEntry}.
+ */
+public class PostingsTest
+{
+	/**
+	 * Test that lines added out of order, and repeated lines, end up sorted.
+	 */
+	@Test
+	public void testAddKeepsOrder()
+	{
+		WordEntry entry = new WordEntry( "kitty" );
+		int[] lines = { 5, 9, 9, 2, 7, 1, 12, 7 };
+		for( int line : lines )
+		{
+			entry.add( "a.txt", line );
+		}
+		Postings postings = entry.getLines( "a.txt" );
+		assertArrayEquals( new int[] { 1, 2, 5, 7, 7, 9, 9, 12 }, postings.toArray() );
+		assertEquals( "Failed to return size.", 8, postings.size() );
+		assertEquals( "Failed to return total.", 8, entry.total() );
+		assertEquals( "Failed to return line.", 5, postings.get( 2 ) );
+
+		PrimitiveIterator.OfInt it = postings.iterator();
+		int previous = 0;
+		while( it.hasNext() )
+		{
+			int line = it.nextInt();
+			assertTrue( "Iterator is out of order.", line >= previous );
+			previous = line;
+		}
+		assertEquals( "[1, 2, 5, 7, 7, 9, 9, 12]", postings.toString() );
+	}
+
+	/**
+	 * Test that a file the word is not in has no lines.
+	 */
+	@Test
+	public void testMissingFile()
+	{
+		WordEntry entry = new WordEntry( "kitty" );
+		entry.add( "a.txt", 1 );
+		assertEquals( "Failed to return empty lines.", 0, entry.getLines( "b.txt" ).size() );
+		try
+		{
+			entry.getLines( "b.txt" ).get( 0 );
+			fail( "Failed to throw IndexOutOfBoundsException" );
+		}
+		catch( IndexOutOfBoundsException e )
+		{
+			assertTrue( true );
+		}
+	}
+
+	/**
+	 * Test that merging entries merges overlapping and appended line lists.
+	 */
+	@Test
+	public void testAddAll()
+	{
+		WordEntry first = new WordEntry( "kitty" );
+		WordEntry second = new WordEntry( "kitty" );
+		for( int line : new int[] { 1, 4, 8 } )
+		{
+			first.add( "a.txt", line );
+			first.add( "b.txt", line );
+		}
+		for( int line : new int[] { 2, 4, 10 } )
+		{
+			second.add( "a.txt", line );
+			second.add( "b.txt", line + 10 );
+			second.add( "c.txt", line );
+		}
+		assertSame( first, first.addAll( second ) );
+		assertArrayEquals( new int[] { 1, 2, 4, 4, 8, 10 }, first.getLines( "a.txt" ).toArray() );
+		assertArrayEquals( new int[] { 1, 4, 8, 12, 14, 20 }, first.getLines( "b.txt" ).toArray() );
+		assertArrayEquals( new int[] { 2, 4, 10 }, first.getLines( "c.txt" ).toArray() );
+		assertEquals( "Failed to return total.", 15, first.total() );
+	}
+
+	/**
+	 * Test that an entry survives Java serialization with its lines.
+	 *
+	 * @throws Exception if serialization fails
+	 */
+	@Test
+	public void testSerialization() throws Exception
+	{
+		WordEntry entry = new WordEntry( "kitty" );
+		entry.add( "a.txt", 3 );
+		entry.add( "a.txt", 1 );
+		entry.add( "b.txt", 2 );
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try( ObjectOutputStream out = new ObjectOutputStream( bytes ) )
+		{
+			out.writeObject( entry );
+		}
+		WordEntry copy;
+		try( ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) )
+		{
+			copy = (WordEntry) in.readObject();
+		}
+		assertEquals( "Failed to restore word.", entry, copy );
+		assertEquals( "Failed to restore files.", entry.getFiles(), copy.getFiles() );
+		assertEquals( "Failed to restore lines.", entry.getLines( "a.txt" ), copy.getLines( "a.txt" ) );
+		copy.add( "a.txt", 2 );
+		assertArrayEquals( new int[] { 1, 2, 3 }, copy.getLines( "a.txt" ).toArray() );
+	}
+}
@@ -0,0 +1,324 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import appDomain.RepositoryFile;
+import appDomain.RepositoryIndex;
+import appDomain.WordTracker.WordEntry;
+import implementations.BSTree;
+import utilities.Iterator;
+
+/**
+ * Class Description: Round-trip and damage detection tests for the binary
+ * repository format written by {@link appDomain.RepositoryFile}.
+ */
+public class RepositoryFileTest
+{
+	private File file;
+	private BSTree<WordEntry> tree;
+
+	/**
+	 * Creates a small repository tree and a temporary file before each test.
+	 *
+	 * @throws Exception if the temporary file cannot be created
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		file = File.createTempFile( "repository", ".dat" );
+		tree = new BSTree<WordEntry>( true );
+		String[] words = { "kitty", "hello", "it's", "nice", "zebra", "42" };
+		for( int i = 0; i < words.length; i++ )
+		{
+			WordEntry entry = new WordEntry( words[i] );
+			entry.add( "test1.txt", i + 1 );
+			entry.add( "test1.txt", i + 1 );
+			entry.add( "test2.txt", 1000 + i );
+			tree.add( entry );
+		}
+	}
+
+	/**
+	 * Removes the temporary file after each test.
+	 */
+	@After
+	public void tearDown()
+	{
+		file.delete();
+	}
+
+	/**
+	 * Test that every word, file and line survives a write and read.
+	 *
+	 * @throws IOException if the repository cannot be written or read
+	 */
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		RepositoryFile.write( tree, file );
+		BSTree<WordEntry> copy = RepositoryFile.read( file );
+
+		assertEquals( "Failed to restore size.", tree.size(), copy.size() );
+		assertTrue( copy.isBalanced() );
+		Iterator<WordEntry> expected = tree.inorderIterator();
+		Iterator<WordEntry> actual = copy.inorderIterator();
+		while( expected.hasNext() )
+		{
+			WordEntry e = expected.next();
+			WordEntry a = actual.next();
+			assertEquals( "Failed to restore word.", e.getWord(), a.getWord() );
+			assertEquals( "Failed to restore files.", e.getFiles(), a.getFiles() );
+			for( String name : e.getFiles() )
+			{
+				assertEquals( "Failed to restore lines.", e.getLines( name ), a.getLines( name ) );
+			}
+		}
+		assertArrayEquals( new int[] { 3, 3 }, copy.get( "it's", WordEntry.KEY_ORDER ).getLines( "test1.txt" ).toArray() );
+	}
+
+	/**
+	 * Test that an empty tree can be saved and loaded.
+	 *
+	 * @throws IOException if the repository cannot be written or read
+	 */
+	@Test
+	public void testEmpty() throws IOException
+	{
+		RepositoryFile.write( new BSTree<WordEntry>( true ), file );
+		assertTrue( RepositoryFile.read( file ).isEmpty() );
+	}
+
+	/**
+	 * Test that a word longer than the 64 KiB read chunk survives a write and
+	 * read, and a lookup in the index.
+	 *
+	 * @throws IOException if the repository cannot be written or read
+	 */
+	@Test
+	public void testLongWord() throws IOException
+	{
+		StringBuilder sb = new StringBuilder();
+		for( int i = 0; i < 70000; i++ )
+		{
+			sb.append( i % 2 == 0 ? 'a' : '\u00e9' );
+		}
+		String word = sb.toString();
+		WordEntry entry = new WordEntry( word );
+		entry.add( "long.txt", 7 );
+		tree.add( entry );
+
+		RepositoryFile.write( tree, file );
+		WordEntry read = RepositoryFile.read( file ).get( word, WordEntry.KEY_ORDER );
+		assertNotNull( "Failed to read the long word.", read );
+		assertEquals( word, read.getWord() );
+		assertArrayEquals( new int[] { 7 }, read.getLines( "long.txt" ).toArray() );
+		try( RepositoryIndex index = RepositoryIndex.open( file ) )
+		{
+			assertEquals( "Failed to find the long word in the index.", word, index.get( word ).getWord() );
+		}
+	}
+
+	/**
+	 * Test that a save that fails leaves no temporary file behind.
+	 *
+	 * @throws IOException if the test files cannot be created
+	 */
+	@Test
+	public void testFailedWriteCleansUp() throws IOException
+	{
+		// a directory that is not empty cannot be replaced, so the final move fails
+		File target = new File( file.getPath() + ".dir" );
+		File inside = new File( target, "keep.txt" );
+		assertTrue( target.mkdir() );
+		assertTrue( inside.createNewFile() );
+		try
+		{
+			RepositoryFile.write( tree, target );
+			fail( "Failed to report the failed move." );
+		}
+		catch( IOException e )
+		{
+			// expected
+		}
+		finally
+		{
+			inside.delete();
+			target.delete();
+		}
+		assertFalse( "Failed to delete the temporary file.", new File( target.getPath() + ".tmp" ).exists() );
+	}
+
+	/**
+	 * Test that the log sequence number is kept in the header.
+	 *
+	 * @throws IOException if the repository cannot be written or read
+	 */
+	@Test
+	public void testSequence() throws IOException
+	{
+		RepositoryFile.write( tree, file, 42 );
+		assertEquals( "Failed to read sequence.", 42, RepositoryFile.readSequence( file ) );
+		assertEquals( tree.size(), RepositoryFile.read( file ).size() );
+		try( RepositoryIndex index = RepositoryIndex.open( file ) )
+		{
+			assertEquals( "Failed to map sequence.", 42, index.getSequence() );
+		}
+	}
+
+	/**
+	 * Test that a changed byte or a truncated file is reported instead of being
+	 * loaded.
+	 *
+	 * @throws IOException if the repository cannot be written
+	 */
+	@Test
+	public void testDamageDetected() throws IOException
+	{
+		RepositoryFile.write( tree, file );
+		try( RandomAccessFile raf = new RandomAccessFile( file, "rw" ) )
+		{
+			raf.seek( raf.length() / 2 );
+			int b = raf.read();
+			raf.seek( raf.length() / 2 );
+			raf.write( b ^ 0x01 );
+		}
+		try
+		{
+			RepositoryFile.read( file );
+			fail( "Failed to detect a changed byte." );
+		}
+		catch( IOException e )
+		{
+			assertTrue( true );
+		}
+
+		RepositoryFile.write( tree, file );
+		try( RandomAccessFile raf = new RandomAccessFile( file, "rw" ) )
+		{
+			raf.setLength( raf.length() - 10 );
+		}
+		try
+		{
+			RepositoryFile.read( file );
+			fail( "Failed to detect a truncated file." );
+		}
+		catch( IOException e )
+		{
+			assertTrue( true );
+		}
+	}
+
+	/**
+	 * Test that {@link appDomain.RepositoryIndex} finds words by binary search
+	 * and lists them in order without loading the tree.
+	 *
+	 * @throws IOException if the repository cannot be written or mapped
+	 */
+	@Test
+	public void testIndex() throws IOException
+	{
+		RepositoryFile.write( tree, file );
+		try( RepositoryIndex index = RepositoryIndex.open( file ) )
+		{
+			assertEquals( "Failed to return size.", 6, index.size() );
+			for( String word : new String[] { "42", "hello", "it's", "kitty", "nice", "zebra" } )
+			{
+				WordEntry entry = index.get( word );
+				assertNotNull( "Failed to find " + word, entry );
+				assertEquals( "Failed to find word.", word, entry.getWord() );
+			}
+			assertArrayEquals( new int[] { 1, 1 }, index.get( "Kitty" ).getLines( "test1.txt" ).toArray() );
+			assertArrayEquals( new int[] { 1003 }, index.get( "nice" ).getLines( "test2.txt" ).toArray() );
+			assertNull( "Failed to return null.", index.get( "kitten" ) );
+			assertNull( "Failed to return null.", index.get( "" ) );
+			assertNull( "Failed to return null.", index.get( "zzz" ) );
+
+			Iterator<WordEntry> expected = tree.inorderIterator();
+			for( WordEntry entry : index )
+			{
+				assertEquals( "Index is out of order ", expected.next().getWord(), entry.getWord() );
+			}
+			assertFalse( expected.hasNext() );
+		}
+	}
+
+	/**
+	 * Test that ranges of the index list the right run of words.
+	 *
+	 * @throws IOException if the repository cannot be written or mapped
+	 */
+	@Test
+	public void testIndexRange() throws IOException
+	{
+		RepositoryFile.write( tree, file );
+		try( RepositoryIndex index = RepositoryIndex.open( file ) )
+		{
+			StringBuilder words = new StringBuilder();
+			for( WordEntry entry : index.range( 2, 5 ) )
+			{
+				words.append( entry.getWord() ).append( ' ' );
+			}
+			assertEquals( "Failed to return range.", "it's kitty nice ", words.toString() );
+			assertFalse( "Empty range should have no words.", index.range( 6, 6 ).iterator().hasNext() );
+			try
+			{
+				index.range( 4, 7 );
+				fail( "Failed to throw IndexOutOfBoundsException" );
+			}
+			catch( IndexOutOfBoundsException e )
+			{
+				assertTrue( true );
+			}
+		}
+	}
+
+	/**
+	 * Test that prefix lookups in the tree and the index find the same words,
+	 * ignoring case.
+	 *
+	 * @throws IOException if the repository cannot be written or mapped
+	 */
+	@Test
+	public void testPrefix() throws IOException
+	{
+		for( String word : new String[] { "Kit", "kitten", "ki", "hell" } )
+		{
+			WordEntry entry = new WordEntry( word );
+			entry.add( "test1.txt", 1 );
+			tree.add( entry );
+		}
+		RepositoryFile.write( tree, file );
+		try( RepositoryIndex index = RepositoryIndex.open( file ) )
+		{
+			for( String prefix : new String[] { "kit", "KI", "hell", "h", "", "zz", "kitty!", "0" } )
+			{
+				StringBuilder fromTree = new StringBuilder();
+				Iterator<WordEntry> it = tree.prefixIterator( prefix, WordEntry.PREFIX_ORDER );
+				while( it.hasNext() )
+				{
+					fromTree.append( it.next().getWord() ).append( ' ' );
+				}
+				StringBuilder fromIndex = new StringBuilder();
+				for( WordEntry entry : index.withPrefix( prefix ) )
+				{
+					fromIndex.append( entry.getWord() ).append( ' ' );
+				}
+				assertEquals( "Index and tree disagree on " + prefix, fromTree.toString(), fromIndex.toString() );
+			}
+			StringBuilder words = new StringBuilder();
+			for( WordEntry entry : index.withPrefix( "KIT" ) )
+			{
+				words.append( entry.getWord() ).append( ' ' );
+			}
+			assertEquals( "Failed to find prefix.", "Kit kitten kitty ", words.toString() );
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import appDomain.RepositoryLock;
+
+/**
+ * Class Description: Tests for the exclusive lock taken on a repository by
+ * {@link appDomain.RepositoryLock}.
+ */
+public class RepositoryLockTest
+{
+	private File file;
+
+	/**
+	 * Picks a lock file name that does not exist yet.
+	 *
+	 * @throws Exception if the temporary file cannot be created
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		file = File.createTempFile( "repository", ".lock" );
+		file.delete();
+	}
+
+	/**
+	 * Removes the lock file after each test.
+	 */
+	@After
+	public void tearDown()
+	{
+		file.delete();
+	}
+
+	/**
+	 * Test that the lock is refused while it is held and can be taken again once
+	 * it is released.
+	 *
+	 * @throws IOException if the lock cannot be taken when it is free
+	 */
+	@Test
+	public void testExclusive() throws IOException
+	{
+		RepositoryLock lock = RepositoryLock.acquire( file );
+		assertTrue( "Failed to create the lock file.", file.exists() );
+		try
+		{
+			RepositoryLock.acquire( file ).close();
+			fail( "Failed to refuse a held lock." );
+		}
+		catch( IOException e )
+		{
+			assertTrue( "Failed to say why.", e.getMessage().contains( "in use by another process" ) );
+		}
+		lock.close();
+
+		RepositoryLock.acquire( file ).close();
+		assertTrue( "Failed to leave the lock file behind.", file.exists() );
+	}
+}
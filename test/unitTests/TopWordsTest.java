@@ -0,0 +1,106 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import appDomain.TopWords;
+import appDomain.WordTracker.WordEntry;
+
+/**
+ * Class Description: Tests for the bounded-heap ranking in
+ * {@link appDomain.TopWords}.
+ */
+public class TopWordsTest
+{
+	/**
+	 * Creates a word seen count times in topWordsTest-a.txt and once in
+	 * topWordsTest-b.txt.
+	 */
+	private static WordEntry word( String word, int count )
+	{
+		WordEntry entry = new WordEntry( word );
+		for( int i = 1; i <= count; i++ )
+		{
+			entry.add( "topWordsTest-a.txt", i );
+		}
+		entry.add( "topWordsTest-b.txt", 1 );
+		return entry;
+	}
+
+	private static List<String> words( List<WordEntry> entries )
+	{
+		List<String> list = new ArrayList<String>();
+		for( WordEntry entry : entries )
+		{
+			list.add( entry.getWord() );
+		}
+		return list;
+	}
+
+	/**
+	 * Test that the most frequent words come first and ties keep word order.
+	 */
+	@Test
+	public void testTop()
+	{
+		List<WordEntry> entries = Arrays.asList( word( "delta", 2 ), word( "alpha", 5 ), word( "echo", 9 ),
+				word( "charlie", 2 ), word( "bravo", 2 ), word( "foxtrot", 1 ) );
+		assertEquals( "Failed to rank words.", Arrays.asList( "echo", "alpha", "bravo" ),
+				words( TopWords.top( entries, 3 ) ) );
+		assertEquals( "Failed to rank every word.",
+				Arrays.asList( "echo", "alpha", "bravo", "charlie", "delta", "foxtrot" ),
+				words( TopWords.top( entries, 100 ) ) );
+		assertTrue( "Failed to return nothing.", TopWords.top( entries, 0 ).isEmpty() );
+		try
+		{
+			TopWords.top( entries, -1 );
+			fail( "Failed to throw IllegalArgumentException" );
+		}
+		catch( IllegalArgumentException e )
+		{
+			assertTrue( true );
+		}
+	}
+
+	/**
+	 * Test that the heap gives the same answer as sorting every word.
+	 */
+	@Test
+	public void testTop_MatchesSort()
+	{
+		List<WordEntry> entries = new ArrayList<WordEntry>();
+		for( int i = 0; i < 500; i++ )
+		{
+			entries.add( word( "w" + ( i * 7919 ) % 500, ( i * 31 ) % 17 ) );
+		}
+		List<WordEntry> sorted = new ArrayList<WordEntry>( entries );
+		sorted.sort( ( a, b ) -> a.total() != b.total() ? b.total() - a.total() : a.compareTo( b ) );
+		for( int k : new int[] { 1, 10, 37, 500 } )
+		{
+			assertEquals( "Failed to match sort for k = " + k, words( sorted.subList( 0, k ) ),
+					words( TopWords.top( entries, k ) ) );
+		}
+	}
+
+	/**
+	 * Test that per-file ranking counts only that file and skips words absent
+	 * from it.
+	 */
+	@Test
+	public void testTop_PerFile()
+	{
+		WordEntry other = new WordEntry( "other" );
+		other.add( "topWordsTest-c.txt", 1 );
+		List<WordEntry> entries = Arrays.asList( word( "alpha", 1 ), word( "bravo", 3 ), other );
+		assertEquals( "Failed to rank by file.", Arrays.asList( "bravo", "alpha" ),
+				words( TopWords.top( entries, 5, "topWordsTest-a.txt" ) ) );
+		assertEquals( "Failed to rank by file.", Arrays.asList( "other" ),
+				words( TopWords.top( entries, 5, "topWordsTest-c.txt" ) ) );
+		assertTrue( "Failed to return nothing.", TopWords.top( entries, 5, "topWordsTest-missing.txt" ).isEmpty() );
+	}
+}
@@ -0,0 +1,51 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import appDomain.WordTracker.WordEntry;
+
+/**
+ * Class Description: Tests for how {@link appDomain.WordTracker.WordEntry}
+ * orders and hashes words.
+ */
+public class WordEntryTest
+{
+	/**
+	 * Test that the byte keys of ASCII words order entries and bare words as
+	 * compareToIgnoreCase does, including against words outside ASCII that
+	 * fold to ASCII letters, and that words found equal hash the same.
+	 */
+	@Test
+	public void testWordOrder()
+	{
+		String[] words = { "kitty", "Kitty", "KIT", "kit's", "kitten", "k1tty", "", "a", "Z", "zebra", "\u017Fun",
+				"sun", "\u212Aitty", "\u00e9t\u00e9", "\u00c9T\u00c9", "~", "apple" };
+		for( String a : words )
+		{
+			WordEntry left = new WordEntry( a );
+			for( String b : words )
+			{
+				WordEntry right = new WordEntry( b );
+				int expected = Integer.signum( a.compareToIgnoreCase( b ) );
+				assertEquals( "Failed to order " + a + " and " + b, expected, Integer.signum( left.compareTo( right ) ) );
+				assertEquals( "Failed to order key " + a + " and " + b, expected,
+						Integer.signum( WordEntry.KEY_ORDER.applyAsInt( a, right ) ) );
+				if( expected == 0 )
+				{
+					assertEquals( "Failed to hash " + a + " as " + b, WordEntry.KEY_HASH.applyAsInt( a ),
+							WordEntry.KEY_HASH.applyAsInt( b ) );
+				}
+				boolean starts = b.length() >= a.length() && b.regionMatches( true, 0, a, 0, a.length() );
+				int prefix = WordEntry.PREFIX_ORDER.applyAsInt( a, right );
+				assertEquals( "Failed to match prefix " + a + " of " + b, starts, prefix == 0 );
+				if( !starts )
+				{
+					assertEquals( "Failed to order prefix " + a + " and " + b, expected > 0 ? 1 : -1,
+							Integer.signum( prefix ) );
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Test;
+
+import appDomain.WordTokenizer;
+
+/**
+ * Class Description: Checks that {@link appDomain.WordTokenizer} splits text
+ * into exactly the words and line numbers produced by the original
+ * split/replaceAll cleanup in WordTracker.
+ */
+public class WordTokenizerTest
+{
+	/**
+	 * The original regex based tokenizing, kept as the reference output.
+	 */
+	private static List<String> reference( Reader source ) throws IOException
+	{
+		List<String> words = new ArrayList<String>();
+		BufferedReader br = new BufferedReader( source );
+		String line;
+		int lineNum = 0;
+		while( ( line = br.readLine() ) != null )
+		{
+			lineNum++;
+			for( String token : line.split( "\\s+" ) )
+			{
+				String clean = token.toLowerCase( Locale.ROOT ).replaceAll( "[^a-z0-9']", "" );
+				if( clean.length() > 0 )
+				{
+					words.add( lineNum + ":" + clean );
+				}
+			}
+		}
+		return words;
+	}
+
+	private static List<String> tokenize( Reader source ) throws IOException
+	{
+		List<String> words = new ArrayList<String>();
+		try( WordTokenizer tokenizer = new WordTokenizer( source ) )
+		{
+			while( tokenizer.next() )
+			{
+				words.add( tokenizer.getLineNumber() + ":" + tokenizer.toString() );
+			}
+		}
+		return words;
+	}
+
+	private static void assertSameWords( String text ) throws IOException
+	{
+		assertEquals( "Tokenizer output differs from the reference.", reference( new StringReader( text ) ),
+				tokenize( new StringReader( text ) ) );
+	}
+
+	/**
+	 * Golden test over the sample files in res/.
+	 *
+	 * @throws IOException if a sample file cannot be read
+	 */
+	@Test
+	public void testSampleFiles() throws IOException
+	{
+		for( String name : new String[] { "res/test1.txt", "res/test2.txt", "res/test3.txt" } )
+		{
+			List<String> expected = reference( Files.newBufferedReader( Paths.get( name ), StandardCharsets.UTF_8 ) );
+			List<String> actual = tokenize( Files.newBufferedReader( Paths.get( name ), StandardCharsets.UTF_8 ) );
+			assertFalse( "Sample file should not be empty: " + name, expected.isEmpty() );
+			assertEquals( "Tokenizer output differs from the reference for " + name, expected, actual );
+		}
+	}
+
+	/**
+	 * Test punctuation, case folding and whitespace other than spaces.
+	 *
+	 * @throws IOException never, the input is in memory
+	 */
+	@Test
+	public void testPunctuationAndCase() throws IOException
+	{
+		assertSameWords( "Hello, World! it's  DON'T\tstop--now ... 42nd\u000Bx\fy \"quoted\" (paren)" );
+		assertSameWords( "\u212Aelvin \u0130stanbul caf\u00e9 na\u00efve \uD83D\uDE00smile" );
+		assertSameWords( "   leading and trailing   " );
+		assertSameWords( "" );
+	}
+
+	/**
+	 * Test that line numbers follow \n, \r and \r\n line breaks, including blank
+	 * lines and a last line without a line break.
+	 *
+	 * @throws IOException never, the input is in memory
+	 */
+	@Test
+	public void testLineBreaks() throws IOException
+	{
+		assertSameWords( "one\ntwo\r\nthree\rfour\n\n\r\n\rfive\r\r\nsix" );
+		assertSameWords( "end\n" );
+		assertSameWords( "\n\nstart" );
+	}
+
+	/**
+	 * Test words and \r\n pairs that straddle the tokenizer's read buffer.
+	 *
+	 * @throws IOException never, the input is in memory
+	 */
+	@Test
+	public void testChunkBoundaries() throws IOException
+	{
+		StringBuilder text = new StringBuilder();
+		for( int i = 0; text.length() < 40000; i++ )
+		{
+			text.append( "Word" ).append( i ).append( i % 7 == 0 ? "\r\n" : i % 5 == 0 ? "\r" : " " );
+		}
+		for( int pad = 0; pad < 3; pad++ )
+		{
+			assertSameWords( text.toString() );
+			text.insert( 0, ' ' );
+		}
+	}
+
+	/**
+	 * Test the CharSequence view of the current word.
+	 *
+	 * @throws IOException never, the input is in memory
+	 */
+	@Test
+	public void testCharSequence() throws IOException
+	{
+		WordTokenizer tokenizer = new WordTokenizer( new StringReader( "Kitty's" ) );
+		assertTrue( tokenizer.next() );
+		assertEquals( "Failed to return word length.", 7, tokenizer.length() );
+		assertEquals( "Failed to return character.", 'k', tokenizer.charAt( 0 ) );
+		assertEquals( "Failed to return subsequence.", "tty", tokenizer.subSequence( 2, 5 ).toString() );
+		assertFalse( tokenizer.next() );
+		assertEquals( "Word should be empty at the end.", 0, tokenizer.length() );
+	}
+}